@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import android.content.Context;
+import android.os.Handler;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import com.mamlambo.tutorial.tutlist.data.ArticleCache;
+import com.mamlambo.tutorial.tutlist.service.ArticlePrefetcher;
+
+/**
+ * Keeps the articles next to the one being read in memory, so moving to
+ * one can show it without touching the disk or the network. Articles come
+ * from the ArticleCache, or are downloaded into it on a miss.
+ * 
+ * Preloaded pages are held within a byte budget, least recently used
+ * first out, and asking for new neighbours cancels the loads of the old
+ * ones. Everything but the loading runs on the main thread.
+ */
+public class ArticlePreloader {
+
+    private static final String DEBUG_TAG = "ArticlePreloader";
+
+    private final ArticleCache cache;
+    private final ArticlePrefetcher fetcher;
+    private final Handler handler = new Handler();
+    private final ExecutorService loader;
+    private final LruCache<String, String> pages;
+
+    // the articles asked for last, and their loads still running
+    private final HashSet<String> wanted = new HashSet<String>();
+    private final HashMap<String, Future<?>> loads = new HashMap<String, Future<?>>();
+    private boolean closed;
+
+    public ArticlePreloader(Context context) {
+        cache = ArticleCache.getInstance(context);
+        fetcher = new ArticlePrefetcher(context);
+        loader = Executors.newFixedThreadPool(context.getResources()
+            .getInteger(R.integer.preload_threads));
+        pages = new LruCache<String, String>(context.getResources()
+            .getInteger(R.integer.preload_memory_bytes)) {
+            @Override
+            protected int sizeOf(String url, String html) {
+                return html.length() * 2;
+            }
+        };
+    }
+
+    /**
+     * Starts loading articles, cancelling loads of any not asked for again
+     * 
+     * @param urls
+     *            The articles to preload; null entries are skipped
+     */
+    public void preload(String... urls) {
+        wanted.clear();
+        for (String url : urls) {
+            if (url != null) {
+                wanted.add(url);
+            }
+        }
+        Iterator<Map.Entry<String, Future<?>>> stale = loads.entrySet()
+            .iterator();
+        while (stale.hasNext()) {
+            Map.Entry<String, Future<?>> load = stale.next();
+            if (!wanted.contains(load.getKey())) {
+                load.getValue().cancel(true);
+                stale.remove();
+            }
+        }
+        for (String url : wanted) {
+            if (pages.get(url) == null && !loads.containsKey(url)) {
+                loads.put(url, loader.submit(newLoad(url)));
+            }
+        }
+    }
+
+    /**
+     * @return The preloaded HTML of an article, or null
+     */
+    public String get(String url) {
+        return url == null ? null : pages.get(url);
+    }
+
+    /**
+     * Cancels all loads and drops the preloaded pages
+     */
+    public void close() {
+        closed = true;
+        loader.shutdownNow();
+        loads.clear();
+        pages.evictAll();
+    }
+
+    private Runnable newLoad(final String url) {
+        return new Runnable() {
+            public void run() {
+                String html = cache.get(url);
+                if (html == null && !Thread.currentThread().isInterrupted()) {
+                    try {
+                        html = fetcher.fetch(url);
+                    } catch (IOException e) {
+                        Log.w(DEBUG_TAG, "Preloading " + url + " failed", e);
+                    }
+                }
+                final String loaded = html;
+                handler.post(new Runnable() {
+                    public void run() {
+                        loads.remove(url);
+                        // a load that was cancelled too late is dropped here
+                        if (!closed && loaded != null && wanted.contains(url)) {
+                            pages.put(url, loaded);
+                        }
+                    }
+                });
+            }
+        };
+    }
+}
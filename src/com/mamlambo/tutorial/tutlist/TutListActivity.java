@@ -38,23 +38,54 @@ import android.support.v4.app.FragmentActivity;
 public class TutListActivity extends FragmentActivity implements
         TutListFragment.OnTutSelectedListener {
 
+    // warms the items next to the one shown in the side-by-side viewer
+    private ArticlePreloader preloader;
+
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.tutlist_fragment);
     }
 
+    @Override
+    protected void onDestroy() {
+        if (preloader != null) {
+            preloader.close();
+        }
+        super.onDestroy();
+    }
+
     public void onTutSelected(String tutUrl) {
-        TutViewerFragment viewer = (TutViewerFragment) getSupportFragmentManager()
-                .findFragmentById(R.id.tutview_fragment);
+        TutViewerFragment viewer = getInLayoutViewer();
 
-        if (viewer == null || !viewer.isInLayout()) {
+        if (viewer == null) {
             Intent showContent = new Intent(getApplicationContext(),
                     TutViewerActivity.class);
             showContent.setData(Uri.parse(tutUrl));
             startActivity(showContent);
         } else {
-            viewer.updateUrl(tutUrl);
+            viewer.updateUrl(tutUrl, preloader != null ? preloader
+                    .get(tutUrl) : null);
         }
     }
+
+    public void onTutNeighbors(String previousUrl, String nextUrl) {
+        if (getInLayoutViewer() == null) {
+            return;
+        }
+        if (preloader == null) {
+            preloader = new ArticlePreloader(getApplicationContext());
+        }
+        preloader.preload(nextUrl, previousUrl);
+    }
+
+    /**
+     * @return The viewer shown next to the list, or null in single pane
+     *         layouts
+     */
+    private TutViewerFragment getInLayoutViewer() {
+        TutViewerFragment viewer = (TutViewerFragment) getSupportFragmentManager()
+                .findFragmentById(R.id.tutview_fragment);
+        return viewer != null && viewer.isInLayout() ? viewer : null;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist;
+
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+import android.content.Context;
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
+import android.graphics.Typeface;
+import android.util.SparseArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+
+/**
+ * Binds the rows of a TutListPager to list_item views. Titles are copied
+ * into a per-view buffer and formatted dates are cached per day, so
+ * binding a row while scrolling allocates nothing. Rows of pages that are
+ * still loading show as blank items.
+ */
+public class TutListAdapter extends BaseAdapter {
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private final TutListPager pager;
+    private final LayoutInflater inflater;
+    private final DateFormat dateFormat;
+    private final TimeZone timeZone;
+    private final Date scratchDate = new Date();
+    // formatted dates keyed by local day number
+    private final SparseArray<String> dayCache = new SparseArray<String>();
+
+    private static class ViewHolder {
+        TextView title;
+        TextView date;
+        final CharArrayBuffer titleBuffer = new CharArrayBuffer(128);
+        int day = Integer.MIN_VALUE;
+        int read = -1;
+    }
+
+    public TutListAdapter(Context context, TutListPager pager) {
+        this.pager = pager;
+        inflater = LayoutInflater.from(context);
+        // get a locale based format for the date, once
+        dateFormat = android.text.format.DateFormat.getDateFormat(context);
+        timeZone = TimeZone.getDefault();
+    }
+
+    public int getCount() {
+        return pager.getCount();
+    }
+
+    /**
+     * @return The pager's cursor positioned on the row, or null if the row
+     *         is not loaded
+     */
+    public Cursor getItem(int position) {
+        return pager.moveToPosition(position);
+    }
+
+    public long getItemId(int position) {
+        Cursor cursor = pager.moveToPosition(position);
+        return cursor == null ? -1 : cursor.getLong(TutListPager.COLUMN_ID);
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        // a row that isn't loaded has no id yet
+        return false;
+    }
+
+    public View getView(int position, View convertView, ViewGroup parent) {
+        View view = convertView;
+        if (view == null) {
+            view = newView(parent);
+        }
+        ViewHolder holder = (ViewHolder) view.getTag();
+        Cursor cursor = pager.moveToPosition(position);
+        if (cursor == null) {
+            // placeholder until the page is loaded
+            holder.title.setText(null);
+            holder.date.setText(null);
+            holder.day = Integer.MIN_VALUE;
+        } else {
+            bindView(holder, cursor);
+        }
+        return view;
+    }
+
+    private View newView(ViewGroup parent) {
+        View view = inflater.inflate(R.layout.list_item, parent, false);
+        ViewHolder holder = new ViewHolder();
+        holder.title = (TextView) view.findViewById(R.id.title);
+        holder.date = (TextView) view.findViewById(R.id.date);
+        view.setTag(holder);
+        return view;
+    }
+
+    private void bindView(ViewHolder holder, Cursor cursor) {
+        cursor.copyStringToBuffer(TutListPager.COLUMN_TITLE, holder.titleBuffer);
+        holder.title.setText(holder.titleBuffer.data, 0,
+            holder.titleBuffer.sizeCopied);
+
+        int read = cursor.getInt(TutListPager.COLUMN_READ) > 0 ? 1 : 0;
+        if (read != holder.read) {
+            if (read == 0) {
+                holder.title.setTypeface(Typeface.DEFAULT_BOLD, 0);
+            } else {
+                holder.title.setTypeface(Typeface.DEFAULT);
+            }
+            holder.read = read;
+        }
+
+        long millis = cursor.getLong(TutListPager.COLUMN_DATE) * 1000;
+        int day = (int) Math.floor((double) (millis + timeZone
+            .getOffset(millis)) / MILLIS_PER_DAY);
+        if (day != holder.day) {
+            holder.date.setText(formatDay(day, millis));
+            holder.day = day;
+        }
+    }
+
+    private String formatDay(int day, long millis) {
+        String formatted = dayCache.get(day);
+        if (formatted == null) {
+            scratchDate.setTime(millis);
+            formatted = dateFormat.format(scratchDate);
+            dayCache.put(day, formatted);
+        }
+        return formatted;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist;
+
+import android.app.Application;
+
+public class TutListApplication extends Application {
+
+    @Override
+    public void onLowMemory() {
+        WebViewPool.getInstance(this).trim(0);
+        super.onLowMemory();
+    }
+
+    /**
+     * API 14+; idle pooled WebViews are given back once the process is on
+     * the kill list, or while it runs short in the foreground. A hidden UI
+     * alone keeps them for the next article.
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_MODERATE
+            || (level >= TRIM_MEMORY_RUNNING_LOW
+                && level < TRIM_MEMORY_UI_HIDDEN)) {
+            WebViewPool.getInstance(this).trim(0);
+        }
+    }
+}
@@ -30,36 +30,27 @@
  */
 package com.mamlambo.tutorial.tutlist;
 
-import java.text.DateFormat;
-import java.util.Date;
-
 import android.app.Activity;
+import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
-import android.graphics.Typeface;
-import android.net.Uri;
 import android.os.Bundle;
 import android.support.v4.app.ListFragment;
-import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
-import android.support.v4.content.Loader;
-import android.support.v4.widget.CursorAdapter;
-import android.support.v4.widget.SimpleCursorAdapter;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
+import android.widget.AbsListView;
 import android.widget.ListView;
-import android.widget.TextView;
 
+import com.mamlambo.tutorial.tutlist.data.ReadStateWriter;
 import com.mamlambo.tutorial.tutlist.data.TutListDatabase;
-import com.mamlambo.tutorial.tutlist.data.TutListProvider;
 import com.mamlambo.tutorial.tutlist.data.TutListSharedPrefs;
 import com.mamlambo.tutorial.tutlist.service.TutListDownloaderService;
 
 public class TutListFragment extends ListFragment implements
-        LoaderManager.LoaderCallbacks<Cursor> {
+        TutListPager.Listener, AbsListView.OnScrollListener {
     private static final String LAST_POSITION_KEY = "lastPosition";
     private static final String LAST_ITEM_CLICKED_KEY = "lastItemClicked";
     private static final String CUR_TUT_URL_KEY = "curTutUrl";
@@ -67,9 +58,10 @@ public class TutListFragment extends ListFragment implements
     public static final String DEBUG_TAG = "TutListFragment";
 
     private OnTutSelectedListener tutSelectedListener;
-    private static final int TUTORIAL_LIST_LOADER = 0x01;
 
-    private SimpleCursorAdapter adapter;
+    private TutListPager pager;
+    private TutListAdapter adapter;
+    private ReadStateWriter readStateWriter;
 
     private long lastItemClicked = -1;
     private String curTutUrl = null;
@@ -82,22 +74,19 @@ public class TutListFragment extends ListFragment implements
             return;
         }
 
-        // get Url
-        String projection[] = { TutListDatabase.COL_URL };
-        Uri viewedTut = Uri.withAppendedPath(TutListProvider.CONTENT_URI,
-                String.valueOf(id));
-        Cursor tutorialCursor = getActivity().getContentResolver().query(
-                viewedTut, projection, null, null, null);
-        if (tutorialCursor.moveToFirst()) {
-            curTutUrl = tutorialCursor.getString(0);
-            tutSelectedListener.onTutSelected(curTutUrl);
+        // get Url from the row's page; a clicked row is always loaded
+        Cursor tutorialCursor = adapter.getItem(position);
+        if (tutorialCursor == null) {
+            return;
         }
-        tutorialCursor.close();
+        curTutUrl = tutorialCursor.getString(TutListPager.COLUMN_URL);
+        tutSelectedListener.onTutSelected(curTutUrl);
+        tutSelectedListener.onTutNeighbors(getUrlAt(position - 1),
+                getUrlAt(position + 1));
 
         // mark the last item as read
         if (lastItemClicked != -1) {
-            TutListProvider.markItemRead(getActivity().getApplicationContext(),
-                    lastItemClicked);
+            readStateWriter.markRead(lastItemClicked);
             Log.d(DEBUG_TAG, "Marking " + lastItemClicked
                     + " as read. Now showing " + id + ".");
         }
@@ -108,12 +97,6 @@ public class TutListFragment extends ListFragment implements
         l.setItemChecked(position, true);
     }
 
-    private static final String[] UI_BINDING_FROM = {
-            TutListDatabase.COL_TITLE, TutListDatabase.COL_DATE,
-            TutListDatabase.COL_READ };
-    private static final int[] UI_BINDING_TO = { R.id.title, R.id.date,
-            R.id.title };
-
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -124,15 +107,13 @@ public class TutListFragment extends ListFragment implements
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
         super.onActivityCreated(savedInstanceState);
-        getLoaderManager().initLoader(TUTORIAL_LIST_LOADER, null, this);
-
-        adapter = new SimpleCursorAdapter(
-                getActivity().getApplicationContext(), R.layout.list_item,
-                null, UI_BINDING_FROM, UI_BINDING_TO,
-                CursorAdapter.FLAG_REGISTER_CONTENT_OBSERVER);
-
-        adapter.setViewBinder(new TutorialViewBinder());
+        Context context = getActivity().getApplicationContext();
+        readStateWriter = ReadStateWriter.getInstance(context);
+        pager = new TutListPager(context, this);
+        adapter = new TutListAdapter(context, pager);
         setListAdapter(adapter);
+        getListView().setOnScrollListener(this);
+        pager.setSelection(getListSelection());
         setHasOptionsMenu(true);
         setEmptyText(getResources().getText(R.string.empty_list_label));
         getListView().setChoiceMode(ListView.CHOICE_MODE_SINGLE);
@@ -159,6 +140,7 @@ public class TutListFragment extends ListFragment implements
     @Override
     public void onPause() {
         showReadFlag = TutListSharedPrefs.getOnlyUnreadFlag(getActivity());
+        readStateWriter.flush();
         Log.d(DEBUG_TAG, "onPause");
         super.onPause();
     }
@@ -168,7 +150,7 @@ public class TutListFragment extends ListFragment implements
         super.onResume();
         Log.d(DEBUG_TAG, "onResume");
         if (showReadFlag != TutListSharedPrefs.getOnlyUnreadFlag(getActivity())) {
-            getLoaderManager().restartLoader(TUTORIAL_LIST_LOADER, null, this);
+            pager.setSelection(getListSelection());
         }
     }
 
@@ -180,6 +162,12 @@ public class TutListFragment extends ListFragment implements
         outState.putInt(LAST_POSITION_KEY, selectedPosition);
     }
 
+    @Override
+    public void onDestroyView() {
+        pager.close();
+        super.onDestroyView();
+    }
+
     @Override
     public void onDestroy() {
         Log.d(DEBUG_TAG, "onDestroy");
@@ -188,6 +176,16 @@ public class TutListFragment extends ListFragment implements
 
     public interface OnTutSelectedListener {
         public void onTutSelected(String tutUrl);
+
+        /**
+         * Called after onTutSelected() with the items either side of it
+         * 
+         * @param previousUrl
+         *            The item above, or null
+         * @param nextUrl
+         *            The item below, or null
+         */
+        public void onTutNeighbors(String previousUrl, String nextUrl);
     }
 
     @Override
@@ -208,11 +206,11 @@ public class TutListFragment extends ListFragment implements
     public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
         inflater.inflate(R.menu.options_menu, menu);
 
-        // refresh menu item
+        // refresh menu item; no data refreshes every subscribed feed
         Intent refreshIntent = new Intent(
                 getActivity().getApplicationContext(),
                 TutListDownloaderService.class);
-        refreshIntent.setData(Uri.parse(getString(R.string.default_url)));
+        refreshIntent.putExtra(TutListDownloaderService.EXTRA_MANUAL, true);
 
         MenuItem refresh = menu.findItem(R.id.refresh_option_item);
         refresh.setIntent(refreshIntent);
@@ -235,61 +233,47 @@ public class TutListFragment extends ListFragment implements
             getActivity().startActivity(item.getIntent());
             break;
         case R.id.mark_all_read_item:
-            TutListProvider.markAllItemsRead(getActivity()
-                    .getApplicationContext());
+            readStateWriter.markAllRead();
             break;
         }
         return true;
     }
 
-    // custom viewbinder
-    private class TutorialViewBinder implements SimpleCursorAdapter.ViewBinder {
-
-        public boolean setViewValue(View view, Cursor cursor, int index) {
-            if (index == cursor.getColumnIndex(TutListDatabase.COL_READ)) {
-                boolean read = cursor.getInt(index) > 0 ? true : false;
-                TextView title = (TextView) view;
-                if (!read) {
-                    title.setTypeface(Typeface.DEFAULT_BOLD, 0);
-                } else {
-                    title.setTypeface(Typeface.DEFAULT);
-                }
-                return true;
-            } else if (index == cursor.getColumnIndex(TutListDatabase.COL_DATE)) {
-                // get a locale based string for the date
-                DateFormat formatter = android.text.format.DateFormat
-                        .getDateFormat(getActivity().getApplicationContext());
-                long date = cursor.getLong(index);
-                Date dateObj = new Date(date * 1000);
-                ((TextView) view).setText(formatter.format(dateObj));
-                return true;
-            } else {
-                return false;
-            }
+    /**
+     * @return The url of a row, or null if there is none or its page isn't
+     *         loaded
+     */
+    private String getUrlAt(int position) {
+        if (position < 0 || position >= adapter.getCount()) {
+            return null;
         }
+        Cursor cursor = adapter.getItem(position);
+        return cursor == null ? null : cursor.getString(TutListPager.COLUMN_URL);
     }
 
-    // LoaderManager.LoaderCallbacks<Cursor> methods
-
-    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        String[] projection = { TutListDatabase.ID, TutListDatabase.COL_TITLE,
-                TutListDatabase.COL_DATE, TutListDatabase.COL_READ };
-
-        Uri content = TutListProvider.CONTENT_URI;
-        String selection = null;
+    /**
+     * @return The where clause for the list, honoring the unread preference
+     */
+    private String getListSelection() {
         if (TutListSharedPrefs.getOnlyUnreadFlag(getActivity())) {
-            selection = TutListDatabase.COL_READ + "='0'";
+            return TutListDatabase.COL_READ + "='0'";
         }
-        CursorLoader cursorLoader = new CursorLoader(getActivity(), content,
-                projection, selection, null, TutListDatabase.COL_DATE + " desc");
-        return cursorLoader;
+        return null;
     }
 
-    public void onLoadFinished(Loader<Cursor> loader, Cursor cursor) {
-        adapter.swapCursor(cursor);
+    // TutListPager.Listener
+
+    public void onPagesChanged() {
+        adapter.notifyDataSetChanged();
+    }
+
+    // AbsListView.OnScrollListener
+
+    public void onScroll(AbsListView view, int firstVisibleItem,
+            int visibleItemCount, int totalItemCount) {
+        pager.onScroll(firstVisibleItem, visibleItemCount);
     }
 
-    public void onLoaderReset(Loader<Cursor> loader) {
-        adapter.swapCursor(null);
+    public void onScrollStateChanged(AbsListView view, int scrollState) {
     }
 }
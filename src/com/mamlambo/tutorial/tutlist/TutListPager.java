@@ -0,0 +1,451 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.res.Resources;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.util.Log;
+
+import com.mamlambo.tutorial.tutlist.data.TutListChangeLog;
+import com.mamlambo.tutorial.tutlist.data.TutListDatabase;
+import com.mamlambo.tutorial.tutlist.data.TutListProvider;
+
+/**
+ * Windowed data source for the tutorial list. Rows are loaded a page at a
+ * time, newest first, with keyset paging on (tut_date, _id); the next page
+ * is fetched as the list scrolls near the end, and pages far away from the
+ * visible rows are closed and reloaded when they come back into view.
+ * 
+ * When the provider reports that only existing rows changed, just the
+ * pages holding them are queried again; anything else reloads the list.
+ * 
+ * Everything but the queries runs on the main thread.
+ */
+public class TutListPager {
+
+    private static final String DEBUG_TAG = "TutListPager";
+
+    public static final String[] PROJECTION = { TutListDatabase.ID,
+        TutListDatabase.COL_TITLE, TutListDatabase.COL_DATE,
+        TutListDatabase.COL_READ, TutListDatabase.COL_URL };
+    public static final int COLUMN_ID = 0;
+    public static final int COLUMN_TITLE = 1;
+    public static final int COLUMN_DATE = 2;
+    public static final int COLUMN_READ = 3;
+    public static final int COLUMN_URL = 4;
+
+    /**
+     * Told on the main thread whenever rows were loaded or dropped
+     */
+    public interface Listener {
+        public void onPagesChanged();
+    }
+
+    private static class Page {
+        // key of the previous page's last row, or null for the first page
+        final Long beforeDate;
+        final Long beforeId;
+        Cursor cursor;
+        int count;
+        long lastDate;
+        long lastId;
+        boolean loading;
+        // changed again while loading; the load may have missed it
+        boolean stale;
+
+        Page(Long beforeDate, Long beforeId) {
+            this.beforeDate = beforeDate;
+            this.beforeId = beforeId;
+        }
+    }
+
+    private final ContentResolver resolver;
+    private final Listener listener;
+    private final Handler handler = new Handler();
+    private final ExecutorService loader = Executors.newSingleThreadExecutor();
+
+    private final int pageSize;
+    private final int prefetchRows;
+    private final int evictPages;
+
+    private final ArrayList<Page> pages = new ArrayList<Page>();
+    private boolean hasMore = true;
+    private boolean appending;
+    private String selection;
+    // bumped by reload() so results of older loads are thrown away
+    private int generation;
+    private int firstVisible;
+    private int lastVisible;
+    private boolean closed;
+    // position in TutListChangeLog the loaded pages are up to date with
+    private long changeSequence;
+
+    private final ContentObserver observer = new ContentObserver(handler) {
+        @Override
+        public void onChange(boolean selfChange) {
+            applyChanges();
+        }
+    };
+
+    // collects the pages to query again while reading the change log
+    private final ArrayList<Page> changedPages = new ArrayList<Page>();
+    private boolean changesNeedReload;
+
+    private final TutListChangeLog.Visitor changeVisitor = new TutListChangeLog.Visitor() {
+        public void onChange(int type, long id) {
+            if (changesNeedReload) {
+                return;
+            }
+            if (type != TutListChangeLog.UPDATE) {
+                // rows came or went, shifting every position after them
+                changesNeedReload = true;
+                return;
+            }
+            Page page = findPage(id);
+            if (page != null && !changedPages.contains(page)) {
+                changedPages.add(page);
+            }
+        }
+    };
+
+    public TutListPager(Context context, Listener listener) {
+        resolver = context.getContentResolver();
+        this.listener = listener;
+        Resources res = context.getResources();
+        pageSize = res.getInteger(R.integer.list_page_size);
+        prefetchRows = res.getInteger(R.integer.list_prefetch_rows);
+        evictPages = res.getInteger(R.integer.list_evict_pages);
+        resolver.registerContentObserver(TutListProvider.CONTENT_URI, true,
+            observer);
+    }
+
+    /**
+     * Sets the filter and loads the list from the top
+     * 
+     * @param selection
+     *            A where clause, or null for all rows
+     */
+    public void setSelection(String selection) {
+        this.selection = selection;
+        closeAll(pages);
+        pages.clear();
+        hasMore = true;
+        listener.onPagesChanged();
+        reload();
+    }
+
+    /**
+     * Reloads every page up to just past the visible rows, in the
+     * background, and swaps them in at once
+     */
+    public void reload() {
+        if (closed) {
+            return;
+        }
+        final int myGeneration = ++generation;
+        appending = false;
+        // anything logged from here on may be missing from the new pages
+        changeSequence = TutListChangeLog.getSequence();
+        final int pageCount = Math.max(1, pageOf(lastVisible) + 2);
+        final String currentSelection = selection;
+        loader.execute(new Runnable() {
+            public void run() {
+                final ArrayList<Page> loaded = new ArrayList<Page>(pageCount);
+                Page previous = null;
+                while (loaded.size() < pageCount) {
+                    Page page = previous == null ? new Page(null, null)
+                        : new Page(previous.lastDate, previous.lastId);
+                    query(page, currentSelection);
+                    loaded.add(page);
+                    if (page.count < pageSize) {
+                        break;
+                    }
+                    previous = page;
+                }
+                handler.post(new Runnable() {
+                    public void run() {
+                        if (myGeneration != generation || closed) {
+                            closeAll(loaded);
+                            return;
+                        }
+                        closeAll(pages);
+                        pages.clear();
+                        pages.addAll(loaded);
+                        hasMore = loaded.get(loaded.size() - 1).count == pageSize;
+                        evictFarPages();
+                        listener.onPagesChanged();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @return The number of rows known so far, loaded or not
+     */
+    public int getCount() {
+        if (pages.isEmpty()) {
+            return 0;
+        }
+        return (pages.size() - 1) * pageSize + pages.get(pages.size() - 1).count;
+    }
+
+    /**
+     * Moves to a row
+     * 
+     * @return The page's cursor positioned on the row, or null if its page
+     *         is not loaded yet; it is then loaded and listeners told
+     */
+    public Cursor moveToPosition(int position) {
+        int index = pageOf(position);
+        if (index >= pages.size()) {
+            return null;
+        }
+        Page page = pages.get(index);
+        if (page.cursor == null) {
+            refill(page);
+            return null;
+        }
+        return page.cursor.moveToPosition(position - index * pageSize) ? page.cursor
+            : null;
+    }
+
+    /**
+     * Tells the pager which rows are visible, to prefetch and evict pages
+     */
+    public void onScroll(int firstVisibleItem, int visibleItemCount) {
+        firstVisible = firstVisibleItem;
+        lastVisible = firstVisibleItem + Math.max(visibleItemCount, 1) - 1;
+        if (pages.isEmpty()) {
+            return;
+        }
+
+        if (hasMore && lastVisible >= getCount() - prefetchRows) {
+            append();
+        }
+        // refill evicted pages near the visible rows, in both directions
+        int from = pageOf(Math.max(0, firstVisible - prefetchRows));
+        int to = Math.min(pages.size() - 1, pageOf(lastVisible + prefetchRows));
+        for (int i = from; i <= to; i++) {
+            if (pages.get(i).cursor == null) {
+                refill(pages.get(i));
+            }
+        }
+        evictFarPages();
+    }
+
+    /**
+     * Closes all pages and stops loading
+     */
+    public void close() {
+        closed = true;
+        resolver.unregisterContentObserver(observer);
+        loader.shutdownNow();
+        closeAll(pages);
+        pages.clear();
+    }
+
+    /**
+     * Brings the pages up to date with the change log, querying again only
+     * the loaded pages holding updated rows
+     */
+    private void applyChanges() {
+        if (closed) {
+            return;
+        }
+        changesNeedReload = false;
+        changedPages.clear();
+        long next = TutListChangeLog.readSince(changeSequence, changeVisitor);
+        if (next == TutListChangeLog.LOST || changesNeedReload) {
+            changedPages.clear();
+            reload();
+            return;
+        }
+        changeSequence = next;
+        for (Page page : changedPages) {
+            refill(page);
+        }
+        changedPages.clear();
+    }
+
+    /**
+     * @return The loaded page holding a row, or null
+     */
+    private Page findPage(long id) {
+        for (Page page : pages) {
+            Cursor cursor = page.cursor;
+            if (cursor == null) {
+                continue;
+            }
+            for (cursor.moveToPosition(-1); cursor.moveToNext();) {
+                if (cursor.getLong(COLUMN_ID) == id) {
+                    return page;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void append() {
+        if (appending) {
+            return;
+        }
+        appending = true;
+        Page last = pages.get(pages.size() - 1);
+        final Page page = new Page(last.lastDate, last.lastId);
+        final int myGeneration = generation;
+        final String currentSelection = selection;
+        loader.execute(new Runnable() {
+            public void run() {
+                query(page, currentSelection);
+                handler.post(new Runnable() {
+                    public void run() {
+                        if (myGeneration != generation || closed) {
+                            closeCursor(page);
+                            return;
+                        }
+                        appending = false;
+                        hasMore = page.count == pageSize;
+                        if (page.count > 0) {
+                            pages.add(page);
+                        } else {
+                            closeCursor(page);
+                        }
+                        evictFarPages();
+                        listener.onPagesChanged();
+                    }
+                });
+            }
+        });
+    }
+
+    private void refill(final Page page) {
+        if (page.loading) {
+            page.stale = true;
+            return;
+        }
+        page.loading = true;
+        page.stale = false;
+        final Page fresh = new Page(page.beforeDate, page.beforeId);
+        final int myGeneration = generation;
+        final String currentSelection = selection;
+        loader.execute(new Runnable() {
+            public void run() {
+                query(fresh, currentSelection);
+                handler.post(new Runnable() {
+                    public void run() {
+                        page.loading = false;
+                        if (myGeneration != generation || closed) {
+                            closeCursor(fresh);
+                            return;
+                        }
+                        // the row count and last key of a page are part of
+                        // every later page, so a page that changed either
+                        // means a fresh start
+                        if ((fresh.count != page.count || fresh.lastId != page.lastId)
+                            && pages.indexOf(page) != pages.size() - 1) {
+                            closeCursor(fresh);
+                            reload();
+                            return;
+                        }
+                        closeCursor(page);
+                        page.cursor = fresh.cursor;
+                        page.count = fresh.count;
+                        page.lastDate = fresh.lastDate;
+                        page.lastId = fresh.lastId;
+                        listener.onPagesChanged();
+                        if (page.stale) {
+                            refill(page);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void evictFarPages() {
+        int first = pageOf(firstVisible) - evictPages;
+        int last = pageOf(lastVisible) + evictPages;
+        for (int i = 0; i < pages.size(); i++) {
+            if ((i < first || i > last) && pages.get(i).cursor != null) {
+                closeCursor(pages.get(i));
+            }
+        }
+    }
+
+    private int pageOf(int position) {
+        return position / pageSize;
+    }
+
+    /**
+     * Runs on the loader thread; fills in the page's cursor, size and the
+     * key of its last row
+     */
+    private void query(Page page, String selection) {
+        Uri uri = page.beforeDate == null ? TutListProvider.pageUri(pageSize)
+            : TutListProvider.pageUri(pageSize, page.beforeDate,
+                page.beforeId);
+        Cursor cursor = resolver.query(uri, PROJECTION, selection, null, null);
+        if (cursor == null) {
+            Log.w(DEBUG_TAG, "Page query failed");
+            return;
+        }
+        // counting fills the cursor window here rather than on the main thread
+        page.count = cursor.getCount();
+        if (cursor.moveToLast()) {
+            page.lastDate = cursor.getLong(COLUMN_DATE);
+            page.lastId = cursor.getLong(COLUMN_ID);
+        }
+        page.cursor = cursor;
+    }
+
+    private static void closeCursor(Page page) {
+        if (page.cursor != null) {
+            page.cursor.close();
+            page.cursor = null;
+        }
+    }
+
+    private static void closeAll(ArrayList<Page> pages) {
+        for (Page page : pages) {
+            closeCursor(page);
+        }
+    }
+}
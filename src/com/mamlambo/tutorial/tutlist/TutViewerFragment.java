@@ -30,6 +30,8 @@
  */
 package com.mamlambo.tutorial.tutlist;
 
+import android.app.Activity;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
 import android.view.LayoutInflater;
@@ -39,16 +41,20 @@ import android.webkit.WebSettings;
 import android.webkit.WebSettings.ZoomDensity;
 import android.webkit.WebView;
 
+import com.mamlambo.tutorial.tutlist.data.ArticleCache;
+
 public class TutViewerFragment extends Fragment {
     private WebView viewer = null;
+    // the cache read for the article asked for last, if still running
+    private CacheLoad cacheLoad = null;
     
     // if we weren't just using the compat library, we could use WebViewFragment
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
             Bundle savedInstanceState) {
-        viewer = (WebView) inflater
-                .inflate(R.layout.tut_view, container, false);
+        Activity activity = getActivity();
+        viewer = WebViewPool.getInstance(activity).acquire(activity);
         WebSettings settings = viewer.getSettings();
         settings.setJavaScriptEnabled(true);
         settings.setDefaultZoom(ZoomDensity.FAR);
@@ -56,6 +62,16 @@ public class TutViewerFragment extends Fragment {
         return viewer;
     }
     
+    @Override
+    public void onDestroyView() {
+        cancelCacheLoad();
+        if (viewer != null) {
+            WebViewPool.getInstance(getActivity()).release(viewer);
+            viewer = null;
+        }
+        super.onDestroyView();
+    }
+
     @Override
     public void onPause() {
        if (viewer != null) {
@@ -73,8 +89,74 @@ public class TutViewerFragment extends Fragment {
     }
 
     public void updateUrl(String newUrl) {
+        updateUrl(newUrl, null);
+    }
+
+    /**
+     * Shows an article
+     * 
+     * @param newUrl
+     *            The article
+     * @param html
+     *            Its page if already loaded, or null to look in the cache
+     *            and then the network
+     */
+    public void updateUrl(String newUrl, String html) {
         if (viewer != null) {
-            viewer.loadUrl(newUrl);
+            cancelCacheLoad();
+            // preloaded pages show at once; the cache is read off the main
+            // thread, and the rest come from the network
+            if (html != null) {
+                show(newUrl, html);
+            } else {
+                cacheLoad = new CacheLoad(ArticleCache
+                        .getInstance(getActivity()));
+                cacheLoad.execute(newUrl);
+            }
+        }
+    }
+
+    private void show(String url, String html) {
+        if (html != null) {
+            viewer.loadDataWithBaseURL(url, html, "text/html", "utf-8", url);
+        } else {
+            viewer.loadUrl(url);
+        }
+    }
+
+    private void cancelCacheLoad() {
+        if (cacheLoad != null) {
+            cacheLoad.cancel(false);
+            cacheLoad = null;
+        }
+    }
+
+    /**
+     * Reads an article from the ArticleCache, then shows it, or loads it
+     * from the network on a miss
+     */
+    private class CacheLoad extends AsyncTask<String, Void, String> {
+        private final ArticleCache cache;
+        private String url;
+
+        CacheLoad(ArticleCache cache) {
+            this.cache = cache;
+        }
+
+        @Override
+        protected String doInBackground(String... urls) {
+            url = urls[0];
+            return cache.get(url);
+        }
+
+        @Override
+        protected void onPostExecute(String html) {
+            // a newer article may have been asked for meanwhile
+            if (cacheLoad != this || viewer == null) {
+                return;
+            }
+            cacheLoad = null;
+            show(url, html);
         }
     }
 }
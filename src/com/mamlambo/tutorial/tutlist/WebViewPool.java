@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist;
+
+import java.util.ArrayList;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.MutableContextWrapper;
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+
+/**
+ * Process-wide pool of the viewer's WebViews. Creating a WebView is the
+ * slowest part of opening an article, so TutViewerFragment borrows one
+ * here and gives it back, reset, when its view is destroyed. Pooled views
+ * are built on a MutableContextWrapper: while borrowed its base is the
+ * activity, which dropdowns and JavaScript dialogs need for their window
+ * token, and while idle it is the application context, so the pool
+ * doesn't hold on to any activity.
+ * 
+ * Main thread only.
+ */
+public class WebViewPool {
+
+    private static final String BLANK_URL = "about:blank";
+
+    private static WebViewPool sInstance;
+
+    private final Context context;
+    private final int maxSize;
+    private final ArrayList<WebView> idle = new ArrayList<WebView>();
+    // released views still loading the blank page
+    private final ArrayList<WebView> resetting = new ArrayList<WebView>();
+
+    public static WebViewPool getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WebViewPool(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private WebViewPool(Context context) {
+        this.context = context;
+        maxSize = context.getResources().getInteger(R.integer.webview_pool_size);
+    }
+
+    /**
+     * @param activity
+     *            The activity the WebView will be shown in
+     * @return An idle WebView, or a new one inflated from R.layout.tut_view
+     */
+    public WebView acquire(Activity activity) {
+        WebView view;
+        if (!idle.isEmpty()) {
+            view = idle.remove(idle.size() - 1);
+            ((MutableContextWrapper) view.getContext()).setBaseContext(activity);
+        } else {
+            view = (WebView) LayoutInflater.from(
+                    new MutableContextWrapper(activity)).inflate(
+                    R.layout.tut_view, null, false);
+        }
+        return view;
+    }
+
+    /**
+     * Takes a WebView back; once its page is blank its history is cleared
+     * and it is idle. Beyond the size cap it is destroyed instead.
+     */
+    public void release(WebView view) {
+        if (view.getParent() instanceof ViewGroup) {
+            ((ViewGroup) view.getParent()).removeView(view);
+        }
+        view.stopLoading();
+        ((MutableContextWrapper) view.getContext()).setBaseContext(context);
+        if (idle.size() + resetting.size() >= maxSize) {
+            view.destroy();
+            return;
+        }
+        resetting.add(view);
+        view.setWebViewClient(new WebViewClient() {
+            @Override
+            public void onPageFinished(WebView view, String url) {
+                // clearHistory() keeps the current page, so it has to wait
+                // for the blank one
+                if (!BLANK_URL.equals(url) || !resetting.remove(view)) {
+                    return;
+                }
+                view.setWebViewClient(null);
+                view.clearHistory();
+                view.onPause();
+                idle.add(view);
+            }
+        });
+        view.loadUrl(BLANK_URL);
+    }
+
+    /**
+     * @return The number of WebViews ready to be borrowed
+     */
+    int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Destroys idle WebViews until at most maxIdle are left; with none
+     * left, views still being reset are destroyed too
+     */
+    public void trim(int maxIdle) {
+        while (idle.size() > maxIdle) {
+            idle.remove(idle.size() - 1).destroy();
+        }
+        if (maxIdle == 0) {
+            while (!resetting.isEmpty()) {
+                resetting.remove(resetting.size() - 1).destroy();
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.data;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.mamlambo.tutorial.tutlist.R;
+
+/**
+ * Size-capped cache of downloaded article pages in the app's cache
+ * directory. Each page is one file, named by a hash of its url, holding
+ * the url on the first line and the HTML after it. Reads bump a file's
+ * modification time, so trimming drops the least recently used pages
+ * first.
+ * 
+ * Writes and trimming hold the cache's lock; reads don't need it, since a
+ * page is only ever replaced whole by a rename, and a file deleted while
+ * it is read stays readable until it is closed.
+ */
+public class ArticleCache {
+
+    private static final String DEBUG_TAG = "ArticleCache";
+    private static final String CACHE_DIR = "articles";
+    private static final String CHARSET = "UTF-8";
+
+    private static ArticleCache sInstance;
+
+    private final File dir;
+    private final long maxBytes;
+
+    public static synchronized ArticleCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ArticleCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private ArticleCache(Context context) {
+        dir = new File(context.getCacheDir(), CACHE_DIR);
+        maxBytes = context.getResources().getInteger(
+                R.integer.article_cache_bytes);
+    }
+
+    /**
+     * @return The cached HTML of an article, or null on a miss
+     */
+    public String get(String url) {
+        File file = fileFor(url);
+        if (!file.exists()) {
+            return null;
+        }
+        Reader in = null;
+        try {
+            in = new InputStreamReader(new FileInputStream(file), CHARSET);
+            BufferedReader reader = new BufferedReader(in);
+            // a different url with the same hash is a miss
+            if (!url.equals(reader.readLine())) {
+                return null;
+            }
+            StringBuilder html = new StringBuilder((int) file.length());
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                html.append(buffer, 0, read);
+            }
+            file.setLastModified(System.currentTimeMillis());
+            return html.toString();
+        } catch (IOException e) {
+            Log.w(DEBUG_TAG, "Reading " + url + " failed", e);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * @return true if a page is cached under the url's name; it may still
+     *         be another url's
+     */
+    public boolean contains(String url) {
+        return fileFor(url).exists();
+    }
+
+    /**
+     * Stores an article, then trims the cache back under its size cap
+     */
+    public synchronized void put(String url, String html) {
+        if (!dir.exists() && !dir.mkdirs()) {
+            Log.w(DEBUG_TAG, "No cache directory");
+            return;
+        }
+        File file = fileFor(url);
+        // written aside and renamed, so a reader never sees half a page
+        File temp = new File(dir, file.getName() + ".tmp");
+        Writer out = null;
+        try {
+            out = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(temp), CHARSET));
+            out.write(url);
+            out.write('\n');
+            out.write(html);
+            out.close();
+            out = null;
+            if (!temp.renameTo(file)) {
+                throw new IOException("Rename failed");
+            }
+        } catch (IOException e) {
+            Log.w(DEBUG_TAG, "Caching " + url + " failed", e);
+            temp.delete();
+            return;
+        } finally {
+            closeQuietly(out);
+        }
+        trim();
+    }
+
+    /**
+     * Deletes the least recently used pages until the cache fits its cap
+     */
+    private void trim() {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            public int compare(File a, File b) {
+                long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+        int evicted = 0;
+        for (int i = 0; i < files.length && total > maxBytes; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) {
+                total -= length;
+                evicted++;
+            }
+        }
+        Log.d(DEBUG_TAG, "Evicted " + evicted + " pages, " + total
+                + " bytes left.");
+    }
+
+    private File fileFor(String url) {
+        // urls sharing a hash share a file; get() checks the url
+        return new File(dir, Integer.toHexString(url.hashCode()));
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // nothing left to do
+            }
+        }
+    }
+}
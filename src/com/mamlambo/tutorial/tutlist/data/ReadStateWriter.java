@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.data;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.SQLException;
+import android.util.Log;
+
+import com.mamlambo.tutorial.tutlist.R;
+
+/**
+ * Marks tutorials read off the main thread. Marks are collected for a short
+ * while, so repeated marks of one item cost nothing, and written together
+ * as a single update. Until then each id is kept in a small journal file,
+ * which is replayed the next time the writer starts if the process died
+ * first.
+ */
+public class ReadStateWriter {
+
+    private static final String DEBUG_TAG = "ReadStateWriter";
+    private static final String JOURNAL_FILE = "read_journal";
+
+    private static ReadStateWriter sInstance;
+
+    private final Context context;
+    private final File journal;
+    private final long flushDelay;
+    private final ScheduledExecutorService writer = Executors
+            .newSingleThreadScheduledExecutor();
+
+    // ids waiting to be written; guarded by this
+    private final HashSet<Long> pending = new HashSet<Long>();
+    private boolean flushScheduled;
+
+    private final Runnable flushTask = new Runnable() {
+        public void run() {
+            writePending();
+        }
+    };
+
+    /**
+     * @return The writer for this process, replaying any journal left
+     *         behind by the last one
+     */
+    public static synchronized ReadStateWriter getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ReadStateWriter(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private ReadStateWriter(Context context) {
+        this.context = context;
+        journal = new File(context.getFilesDir(), JOURNAL_FILE);
+        flushDelay = context.getResources().getInteger(
+                R.integer.read_flush_delay);
+        writer.execute(new Runnable() {
+            public void run() {
+                replayJournal();
+            }
+        });
+    }
+
+    /**
+     * Queues a tutorial to be marked read
+     */
+    public void markRead(final long id) {
+        synchronized (this) {
+            if (!pending.add(id)) {
+                return;
+            }
+            if (!flushScheduled) {
+                flushScheduled = true;
+                writer.schedule(flushTask, flushDelay, TimeUnit.MILLISECONDS);
+            }
+        }
+        writer.execute(new Runnable() {
+            public void run() {
+                appendJournal(id);
+            }
+        });
+    }
+
+    /**
+     * Marks every tutorial read, in the background; queued marks are
+     * dropped as they are covered
+     */
+    public void markAllRead() {
+        writer.execute(new Runnable() {
+            public void run() {
+                synchronized (ReadStateWriter.this) {
+                    pending.clear();
+                }
+                TutListProvider.markAllItemsRead(context);
+                journal.delete();
+            }
+        });
+    }
+
+    /**
+     * Writes queued marks now rather than when the timer fires, e.g. when
+     * the list goes into the background
+     */
+    public void flush() {
+        writer.execute(flushTask);
+    }
+
+    private void writePending() {
+        Long[] ids;
+        synchronized (this) {
+            flushScheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            ids = pending.toArray(new Long[pending.size()]);
+            pending.clear();
+        }
+
+        StringBuilder selection = new StringBuilder(TutListDatabase.COL_READ
+                + "='0' AND " + TutListDatabase.ID + " IN (");
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0) {
+                selection.append(',');
+            }
+            selection.append(ids[i]);
+        }
+        selection.append(')');
+
+        ContentValues values = new ContentValues();
+        values.put(TutListDatabase.COL_READ, "1");
+        try {
+            int updated = context.getContentResolver().update(
+                    TutListProvider.CONTENT_URI, values, selection.toString(),
+                    null);
+            Log.d(DEBUG_TAG, "Marked " + updated + " of " + ids.length
+                    + " queued items as read.");
+        } catch (SQLException e) {
+            Log.e(DEBUG_TAG, "Marking items read failed, keeping them queued", e);
+            synchronized (this) {
+                for (Long id : ids) {
+                    pending.add(id);
+                }
+            }
+            return;
+        }
+        rewriteJournal();
+    }
+
+    /**
+     * Runs on the writer thread
+     */
+    private void appendJournal(long id) {
+        Writer out = null;
+        try {
+            out = new FileWriter(journal, true);
+            out.write(Long.toString(id));
+            out.write('\n');
+        } catch (IOException e) {
+            Log.w(DEBUG_TAG, "Journal write failed", e);
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    /**
+     * Runs on the writer thread; leaves only the still queued ids in the
+     * journal
+     */
+    private void rewriteJournal() {
+        Long[] ids;
+        synchronized (this) {
+            ids = pending.toArray(new Long[pending.size()]);
+        }
+        if (ids.length == 0) {
+            journal.delete();
+            return;
+        }
+        Writer out = null;
+        try {
+            out = new FileWriter(journal, false);
+            for (Long id : ids) {
+                out.write(id.toString());
+                out.write('\n');
+            }
+        } catch (IOException e) {
+            Log.w(DEBUG_TAG, "Journal write failed", e);
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    /**
+     * Runs on the writer thread
+     */
+    private void replayJournal() {
+        BufferedReader in = null;
+        int replayed = 0;
+        try {
+            in = new BufferedReader(new FileReader(journal));
+            String line;
+            synchronized (this) {
+                while ((line = in.readLine()) != null) {
+                    try {
+                        pending.add(Long.valueOf(line.trim()));
+                        replayed++;
+                    } catch (NumberFormatException e) {
+                        // torn last line; the mark is simply lost
+                    }
+                }
+            }
+        } catch (FileNotFoundException e) {
+            return;
+        } catch (IOException e) {
+            Log.w(DEBUG_TAG, "Journal read failed", e);
+        } finally {
+            closeQuietly(in);
+        }
+        Log.d(DEBUG_TAG, "Replaying " + replayed + " read marks.");
+        writePending();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // nothing left to do
+            }
+        }
+    }
+}
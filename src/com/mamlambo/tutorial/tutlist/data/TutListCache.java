@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.data;
+
+import android.support.v4.util.LruCache;
+
+/**
+ * Bounded LRU cache of hot tutorial rows, keyed by id, and of a few named
+ * aggregate results, used by TutListProvider. The provider tells it about
+ * every write so only the entries a write could have changed are dropped.
+ * 
+ * A result read from the database is only stored if nothing was
+ * invalidated while it was being read, and no write that invalidates
+ * before committing is open, so a slow query can't put back an entry a
+ * concurrent write just dropped.
+ */
+class TutListCache {
+
+    // the newest tutorial, stored as a row
+    static final String LATEST = "latest";
+    // the number of unread tutorials, stored as a one column row
+    static final String UNREAD_COUNT = "unread_count";
+
+    private final LruCache<Object, Object[]> entries;
+    // bumped on every invalidation; guarded by this
+    private long stamp;
+    // id of the row cached as LATEST, or -1
+    private long latestId = -1;
+    // writes between beginWrite() and endWrite(); guarded by this
+    private int openWrites;
+
+    TutListCache(int maxEntries) {
+        entries = new LruCache<Object, Object[]>(maxEntries);
+    }
+
+    /**
+     * @return The cached value for a row id (as a Long) or a named
+     *         aggregate, or null
+     */
+    Object[] get(Object key) {
+        return entries.get(key);
+    }
+
+    /**
+     * @return A stamp to take before reading a value from the database, to
+     *         pass to put()
+     */
+    synchronized long getStamp() {
+        return stamp;
+    }
+
+    /**
+     * Stores a value unless something was invalidated since getStamp()
+     * returned the given stamp
+     */
+    synchronized void put(Object key, Object[] value, long readStamp) {
+        if (readStamp != stamp || openWrites > 0) {
+            return;
+        }
+        if (LATEST.equals(key)) {
+            latestId = (Long) value[0];
+        }
+        entries.put(key, value);
+    }
+
+    /**
+     * Starts a write whose invalidations happen before it commits; nothing
+     * is cached until the matching endWrite()
+     */
+    synchronized void beginWrite() {
+        openWrites++;
+    }
+
+    /**
+     * Ends a write started with beginWrite(), once it has committed or
+     * rolled back
+     */
+    synchronized void endWrite() {
+        openWrites--;
+        stamp++;
+    }
+
+    /**
+     * An existing row was updated
+     * 
+     * @param readChanged
+     *            true if its read flag may have changed
+     * @param dateChanged
+     *            true if its date may have changed, and so which row is the
+     *            latest
+     */
+    synchronized void rowUpdated(long id, boolean readChanged,
+            boolean dateChanged) {
+        stamp++;
+        entries.remove(id);
+        if (dateChanged || id == latestId) {
+            removeLatest();
+        }
+        if (readChanged) {
+            entries.remove(UNREAD_COUNT);
+        }
+    }
+
+    /**
+     * New, unread rows were inserted
+     */
+    synchronized void rowsInserted() {
+        stamp++;
+        removeLatest();
+        entries.remove(UNREAD_COUNT);
+    }
+
+    synchronized void rowDeleted(long id) {
+        stamp++;
+        entries.remove(id);
+        if (id == latestId) {
+            removeLatest();
+        }
+        entries.remove(UNREAD_COUNT);
+    }
+
+    /**
+     * Drops everything, for writes too broad to track row by row
+     */
+    synchronized void clear() {
+        stamp++;
+        // removed rather than evicted, so the eviction count only shows
+        // entries pushed out by size
+        for (Object key : entries.snapshot().keySet()) {
+            entries.remove(key);
+        }
+        latestId = -1;
+    }
+
+    /**
+     * @return { hits, misses, evictions, size }
+     */
+    long[] getCounters() {
+        return new long[] { entries.hitCount(), entries.missCount(),
+                entries.evictionCount(), entries.size() };
+    }
+
+    private void removeLatest() {
+        entries.remove(LATEST);
+        latestId = -1;
+    }
+}
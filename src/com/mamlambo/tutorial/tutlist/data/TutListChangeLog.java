@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.data;
+
+/**
+ * Bounded, in-process log of row changes made through TutListProvider.
+ * 
+ * Before API 16 a ContentObserver is only told that something under its
+ * uri changed, not which row. Observers in this process read the log
+ * after each notification to patch just the rows that changed; if they
+ * fell too far behind, or a change was too broad to list, they are told
+ * to start over.
+ */
+public class TutListChangeLog {
+
+    public static final int INSERT = 1;
+    public static final int UPDATE = 2;
+    public static final int DELETE = 3;
+    // too many rows to list individually
+    public static final int RESET = 4;
+
+    /** Returned by readSince() when changes were lost */
+    public static final long LOST = -1;
+
+    static final int CAPACITY = 256;
+
+    /**
+     * Receives logged changes, oldest first
+     */
+    public interface Visitor {
+        /**
+         * @param id
+         *            The row, or -1 for INSERT of several rows and RESET
+         */
+        public void onChange(int type, long id);
+    }
+
+    private static final int[] types = new int[CAPACITY];
+    private static final long[] ids = new long[CAPACITY];
+    // sequence number of the next change to be recorded
+    private static long nextSequence;
+
+    private TutListChangeLog() {
+    }
+
+    static synchronized void record(int type, long id) {
+        int slot = (int) (nextSequence % CAPACITY);
+        types[slot] = type;
+        ids[slot] = id;
+        nextSequence++;
+    }
+
+    /**
+     * @return The sequence number to read from to see only later changes
+     */
+    public static synchronized long getSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Replays the changes recorded since a sequence number
+     * 
+     * @param since
+     *            The value returned by the last call, or getSequence()
+     * @return The sequence number for the next call, or LOST if some
+     *         changes were overwritten and nothing was replayed
+     */
+    public static synchronized long readSince(long since, Visitor visitor) {
+        if (since < nextSequence - CAPACITY) {
+            return LOST;
+        }
+        for (long sequence = since; sequence < nextSequence; sequence++) {
+            int slot = (int) (sequence % CAPACITY);
+            visitor.onChange(types[slot], ids[slot]);
+        }
+        return nextSequence;
+    }
+}
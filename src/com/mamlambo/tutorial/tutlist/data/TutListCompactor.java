@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.data;
+
+import android.content.res.Resources;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.mamlambo.tutorial.tutlist.R;
+
+/**
+ * Applies the retention policy to the tutorials table and gives the freed
+ * pages back to the file system. Rows are deleted a chunk at a time, each
+ * chunk in its own transaction, so other readers and writers only ever
+ * wait for one chunk.
+ * 
+ * The policy comes from config.xml; a limit of 0 is switched off:
+ * retention_max_rows keeps only the newest rows, retention_max_age_days
+ * drops everything older, and retention_read_age_days drops read rows
+ * older. All three are off by default.
+ * 
+ * The url of every deleted row is kept in a tombstone table, which the
+ * tutorials table's insert trigger checks, so a row still listed by its
+ * feed isn't ingested again as unread. Only the newest
+ * retention_max_tombstones tombstones are kept; feeds don't list items
+ * that old.
+ */
+class TutListCompactor {
+
+    private static final String DEBUG_TAG = "TutListCompactor";
+
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+    // PRAGMA auto_vacuum value
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    /**
+     * What one run reclaimed
+     */
+    static class Result {
+        int rowsDeleted;
+        long bytesReclaimed;
+
+        @Override
+        public String toString() {
+            return rowsDeleted + " rows, " + bytesReclaimed + " bytes";
+        }
+    }
+
+    private final int maxRows;
+    private final int maxAgeDays;
+    private final int readAgeDays;
+    private final int chunkRows;
+    private final int maxTombstones;
+
+    TutListCompactor(Resources res) {
+        maxRows = res.getInteger(R.integer.retention_max_rows);
+        maxAgeDays = res.getInteger(R.integer.retention_max_age_days);
+        readAgeDays = res.getInteger(R.integer.retention_read_age_days);
+        chunkRows = res.getInteger(R.integer.compact_chunk_rows);
+        maxTombstones = res.getInteger(R.integer.retention_max_tombstones);
+    }
+
+    /**
+     * Deletes expired rows and reclaims the space; call off the main
+     * thread
+     */
+    Result compact(SQLiteDatabase db) {
+        Result result = new Result();
+        long sizeBefore = getFileSize(db);
+        long now = System.currentTimeMillis() / 1000;
+
+        if (maxAgeDays > 0) {
+            result.rowsDeleted += deleteChunked(db, TutListDatabase.COL_DATE
+                    + "<" + (now - maxAgeDays * SECONDS_PER_DAY), 0);
+        }
+        if (readAgeDays > 0) {
+            result.rowsDeleted += deleteChunked(db, TutListDatabase.COL_READ
+                    + "=1 AND " + TutListDatabase.COL_DATE + "<"
+                    + (now - readAgeDays * SECONDS_PER_DAY), 0);
+        }
+        if (maxRows > 0) {
+            result.rowsDeleted += deleteChunked(db, null, maxRows);
+        }
+        if (result.rowsDeleted > 0) {
+            db.execSQL("DELETE FROM " + TutListDatabase.TABLE_DELETED
+                    + " WHERE " + TutListDatabase.COL_URL + " IN (SELECT "
+                    + TutListDatabase.COL_URL + " FROM "
+                    + TutListDatabase.TABLE_DELETED + " ORDER BY "
+                    + TutListDatabase.COL_DATE + " DESC LIMIT -1 OFFSET "
+                    + maxTombstones + ")");
+        }
+
+        reclaim(db, result.rowsDeleted > 0);
+        result.bytesReclaimed = Math.max(0, sizeBefore - getFileSize(db));
+        return result;
+    }
+
+    /**
+     * Deletes the rows matching a where clause, or all but the newest
+     * keepNewest rows, one chunk per transaction, leaving a tombstone for
+     * each
+     */
+    private int deleteChunked(SQLiteDatabase db, String where, int keepNewest) {
+        String chunk = "SELECT " + TutListDatabase.ID + " FROM "
+                + TutListDatabase.VIEW_TUTORIALS
+                + (where != null ? " WHERE " + where : "") + " ORDER BY "
+                + TutListDatabase.COL_DATE + " DESC, " + TutListDatabase.ID
+                + " DESC LIMIT " + chunkRows
+                + (keepNewest > 0 ? " OFFSET " + keepNewest : "");
+        int total = 0;
+        int deleted;
+        do {
+            db.beginTransaction();
+            try {
+                db.execSQL("INSERT OR REPLACE INTO "
+                        + TutListDatabase.TABLE_DELETED + " ("
+                        + TutListDatabase.COL_URL + ", "
+                        + TutListDatabase.COL_DATE + ") SELECT "
+                        + TutListDatabase.COL_URL + ", "
+                        + TutListDatabase.COL_DATE + " FROM "
+                        + TutListDatabase.TABLE_TUTORIALS + " WHERE "
+                        + TutListDatabase.ID + " IN (" + chunk + ")");
+                deleted = db.delete(TutListDatabase.TABLE_TUTORIALS,
+                        TutListDatabase.ID + " IN (" + chunk + ")", null);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            total += deleted;
+        } while (deleted == chunkRows);
+        return total;
+    }
+
+    /**
+     * Gives free pages back. The first run on a database created without
+     * incremental auto vacuum switches it on, which takes a full VACUUM;
+     * after that only the free pages are moved.
+     */
+    private void reclaim(SQLiteDatabase db, boolean deletedRows) {
+        try {
+            long autoVacuum = DatabaseUtils.longForQuery(db,
+                    "PRAGMA auto_vacuum", null);
+            if (autoVacuum != AUTO_VACUUM_INCREMENTAL) {
+                Log.i(DEBUG_TAG, "Switching to incremental auto vacuum");
+                db.execSQL("PRAGMA auto_vacuum = " + AUTO_VACUUM_INCREMENTAL);
+                db.execSQL("VACUUM");
+            } else if (deletedRows) {
+                // how many pages one run of the pragma frees depends on how
+                // far the driver steps it, so repeat while it helps
+                long free = getFreePages(db);
+                while (free > 0) {
+                    Cursor cursor = db.rawQuery("PRAGMA incremental_vacuum",
+                            null);
+                    cursor.getCount();
+                    cursor.close();
+                    long left = getFreePages(db);
+                    if (left >= free) {
+                        break;
+                    }
+                    free = left;
+                }
+            }
+        } catch (SQLException e) {
+            // e.g. VACUUM while another statement is running; next time
+            Log.w(DEBUG_TAG, "Vacuum failed", e);
+        }
+    }
+
+    private static long getFreePages(SQLiteDatabase db) {
+        return DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+    }
+
+    private static long getFileSize(SQLiteDatabase db) {
+        return DatabaseUtils.longForQuery(db, "PRAGMA page_count", null)
+                * DatabaseUtils.longForQuery(db, "PRAGMA page_size", null);
+    }
+}
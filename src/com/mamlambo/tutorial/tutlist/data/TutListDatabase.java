@@ -30,14 +30,20 @@
  */
 package com.mamlambo.tutorial.tutlist.data;
 
+import android.content.ContentValues;
 import android.content.Context;
+import android.content.res.Resources;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 import android.util.Log;
 
+import com.mamlambo.tutorial.tutlist.R;
+
 public class TutListDatabase extends SQLiteOpenHelper {
     private static final String DEBUG_TAG = "TutListDatabase";
-    private static final int DB_VERSION = 4;
+    private static final int DB_VERSION = 10;
     private static final String DB_NAME = "tutorial_data";
 
     public static final String TABLE_TUTORIALS = "tutorials";
@@ -52,6 +58,8 @@ public class TutListDatabase extends SQLiteOpenHelper {
             + TABLE_TUTORIALS + " ADD COLUMN " + COL_DATE
             + " INTEGER NOT NULL DEFAULT '1297728000' ";
 
+    // since v8 the column in the table is unused; read state lives in the
+    // watermark and exceptions below and is computed by VIEW_TUTORIALS
     public static final String COL_READ = "read";
     private static final String ALTER_ADD_COL_READ = "ALTER TABLE "
             + TABLE_TUTORIALS + " ADD COLUMN " + COL_READ
@@ -66,35 +74,352 @@ public class TutListDatabase extends SQLiteOpenHelper {
 
     private static final String DB_SCHEMA = CREATE_TABLE_TUTORIALS;
 
+    // v5: the list orders by date, optionally only unread; the widget only
+    // wants the newest row. The read index is dropped again in v8.
+    public static final String INDEX_READ_DATE = "tutorials_read_date";
+    private static final String CREATE_INDEX_READ_DATE = "CREATE INDEX "
+            + INDEX_READ_DATE + " ON " + TABLE_TUTORIALS + " (" + COL_READ
+            + ", " + COL_DATE + " DESC);";
+
+    public static final String INDEX_DATE = "tutorials_date";
+    private static final String CREATE_INDEX_DATE = "CREATE INDEX "
+            + INDEX_DATE + " ON " + TABLE_TUTORIALS + " (" + COL_DATE + ");";
+
+    // v6: the feeds to download; shares the ID and COL_URL column names
+    public static final String TABLE_FEEDS = "feeds";
+    private static final String CREATE_TABLE_FEEDS = "CREATE TABLE "
+            + TABLE_FEEDS + " (" + ID + " integer PRIMARY KEY AUTOINCREMENT, "
+            + COL_URL + " text UNIQUE NOT NULL);";
+
+    // v7: full-text index of the titles, docid = tutorials._id, kept in
+    // step by triggers; fts3 since fts4 needs API 11
+    public static final String TABLE_SEARCH = "tutorials_fts";
+    private static final String CREATE_TABLE_SEARCH = "CREATE VIRTUAL TABLE "
+            + TABLE_SEARCH + " USING fts3(" + COL_TITLE + ");";
+    private static final String FILL_SEARCH = "INSERT INTO " + TABLE_SEARCH
+            + " (docid, " + COL_TITLE + ") SELECT " + ID + ", " + COL_TITLE
+            + " FROM " + TABLE_TUTORIALS + ";";
+    private static final String[] CREATE_TRIGGERS_SEARCH = {
+            "CREATE TRIGGER tutorials_fts_insert AFTER INSERT ON "
+                    + TABLE_TUTORIALS + " BEGIN INSERT INTO " + TABLE_SEARCH
+                    + " (docid, " + COL_TITLE + ") VALUES (new." + ID
+                    + ", new." + COL_TITLE + "); END;",
+            "CREATE TRIGGER tutorials_fts_update AFTER UPDATE OF " + COL_TITLE
+                    + " ON " + TABLE_TUTORIALS + " BEGIN UPDATE "
+                    + TABLE_SEARCH + " SET " + COL_TITLE + " = new."
+                    + COL_TITLE + " WHERE docid = old." + ID + "; END;",
+            "CREATE TRIGGER tutorials_fts_delete AFTER DELETE ON "
+                    + TABLE_TUTORIALS + " BEGIN DELETE FROM " + TABLE_SEARCH
+                    + " WHERE docid = old." + ID + "; END;" };
+
+    // v8: a tutorial is read if it has a read exception, or else if its id
+    // is at or below the watermark; marking all read moves the watermark
+    // to the newest id and drops the exceptions
+    public static final String TABLE_WATERMARK = "read_watermark";
+    public static final String COL_WATERMARK = "watermark";
+    private static final String CREATE_TABLE_WATERMARK = "CREATE TABLE "
+            + TABLE_WATERMARK + " (" + COL_WATERMARK + " INTEGER NOT NULL);";
+
+    public static final String TABLE_READ_EXCEPTIONS = "read_exceptions";
+    public static final String COL_TUT_ID = "tut_id";
+    private static final String CREATE_TABLE_READ_EXCEPTIONS = "CREATE TABLE "
+            + TABLE_READ_EXCEPTIONS + " (" + COL_TUT_ID
+            + " INTEGER PRIMARY KEY, " + COL_READ + " INTEGER NOT NULL);";
+    private static final String CREATE_TRIGGER_READ_EXCEPTIONS = "CREATE TRIGGER "
+            + "read_exceptions_delete AFTER DELETE ON " + TABLE_TUTORIALS
+            + " BEGIN DELETE FROM " + TABLE_READ_EXCEPTIONS + " WHERE "
+            + COL_TUT_ID + " = old." + ID + "; END;";
+
+    // the tutorials with their read state; all reads go through this. The
+    // cast gives the computed column integer affinity, so read='0' still
+    // matches
+    public static final String VIEW_TUTORIALS = "tutorials_view";
+    private static final String CREATE_VIEW_TUTORIALS = "CREATE VIEW "
+            + VIEW_TUTORIALS + " AS SELECT t." + ID + " AS " + ID + ", t."
+            + COL_TITLE + " AS " + COL_TITLE + ", t." + COL_URL + " AS "
+            + COL_URL + ", t." + COL_DATE + " AS " + COL_DATE
+            + ", CAST(COALESCE(e." + COL_READ + ", t." + ID + " <= (SELECT "
+            + COL_WATERMARK + " FROM " + TABLE_WATERMARK
+            + ")) AS INTEGER) AS " + COL_READ + " FROM " + TABLE_TUTORIALS
+            + " t LEFT JOIN " + TABLE_READ_EXCEPTIONS + " e ON e."
+            + COL_TUT_ID + " = t." + ID + ";";
+
+    // v9: one row of counts, kept in step by triggers so nothing has to
+    // count the tutorials. Each trigger adds its own change to unread,
+    // judged by the watermark at the time: deleting a tutorial takes away
+    // its unread state by the watermark, and dropping its exception then
+    // corrects that to its real state.
+    public static final String TABLE_COUNTS = "tutorial_counts";
+    public static final String COL_TOTAL = "total";
+    public static final String COL_UNREAD = "unread";
+    // every row ever inserted; the difference between two readings is the
+    // number of new tutorials in between
+    public static final String COL_INSERTED = "inserted";
+    private static final String CREATE_TABLE_COUNTS = "CREATE TABLE "
+            + TABLE_COUNTS + " (" + COL_TOTAL + " INTEGER NOT NULL, "
+            + COL_UNREAD + " INTEGER NOT NULL, " + COL_INSERTED
+            + " INTEGER NOT NULL);";
+    private static final String FILL_COUNTS = "INSERT INTO " + TABLE_COUNTS
+            + " SELECT count(*), coalesce(sum(" + COL_READ
+            + " = 0), 0), coalesce((SELECT seq FROM sqlite_sequence"
+            + " WHERE name = '" + TABLE_TUTORIALS + "'), 0) FROM "
+            + VIEW_TUTORIALS + ";";
+    private static final String WATERMARK = "(SELECT " + COL_WATERMARK
+            + " FROM " + TABLE_WATERMARK + ")";
+    private static final String[] CREATE_TRIGGERS_COUNTS = {
+            "CREATE TRIGGER tutorial_counts_insert AFTER INSERT ON "
+                    + TABLE_TUTORIALS + " BEGIN UPDATE " + TABLE_COUNTS
+                    + " SET " + COL_TOTAL + " = " + COL_TOTAL + " + 1, "
+                    + COL_INSERTED + " = " + COL_INSERTED + " + 1, "
+                    + COL_UNREAD + " = " + COL_UNREAD + " + (new." + ID
+                    + " > " + WATERMARK + "); END;",
+            "CREATE TRIGGER tutorial_counts_delete AFTER DELETE ON "
+                    + TABLE_TUTORIALS + " BEGIN UPDATE " + TABLE_COUNTS
+                    + " SET " + COL_TOTAL + " = " + COL_TOTAL + " - 1, "
+                    + COL_UNREAD + " = " + COL_UNREAD + " - (old." + ID
+                    + " > " + WATERMARK + "); END;",
+            "CREATE TRIGGER read_counts_insert AFTER INSERT ON "
+                    + TABLE_READ_EXCEPTIONS + " BEGIN UPDATE " + TABLE_COUNTS
+                    + " SET " + COL_UNREAD + " = " + COL_UNREAD + " + (new."
+                    + COL_READ + " = 0) - (new." + COL_TUT_ID + " > "
+                    + WATERMARK + "); END;",
+            "CREATE TRIGGER read_counts_delete AFTER DELETE ON "
+                    + TABLE_READ_EXCEPTIONS + " BEGIN UPDATE " + TABLE_COUNTS
+                    + " SET " + COL_UNREAD + " = " + COL_UNREAD + " + (old."
+                    + COL_TUT_ID + " > " + WATERMARK + ") - (old." + COL_READ
+                    + " = 0); END;",
+            // rows between the old and new watermark without an exception
+            // change state; only a range of the primary keys is counted
+            "CREATE TRIGGER read_counts_watermark AFTER UPDATE OF "
+                    + COL_WATERMARK + " ON " + TABLE_WATERMARK
+                    + " BEGIN UPDATE " + TABLE_COUNTS + " SET " + COL_UNREAD
+                    + " = " + COL_UNREAD + " - " + countBetween("old", "new")
+                    + " + " + countBetween("new", "old") + "; END;" };
+
+    // urls of rows dropped by the retention policy; the feeds keep listing
+    // them for a while, and without the tombstone they'd come back unread
+    public static final String TABLE_DELETED = "deleted_urls";
+    private static final String CREATE_TABLE_DELETED = "CREATE TABLE "
+            + TABLE_DELETED + " (" + COL_URL + " TEXT PRIMARY KEY, "
+            + COL_DATE + " INTEGER);";
+    private static final String CREATE_TRIGGER_DELETED = "CREATE TRIGGER "
+            + "deleted_urls_ignore BEFORE INSERT ON " + TABLE_TUTORIALS
+            + " WHEN EXISTS (SELECT 1 FROM " + TABLE_DELETED + " WHERE "
+            + COL_URL + " = new." + COL_URL
+            + ") BEGIN SELECT RAISE(IGNORE); END;";
+
+    private final Context mContext;
+
     public TutListDatabase(Context context) {
         super(context, DB_NAME, null, DB_VERSION);
+        mContext = context;
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(DB_SCHEMA);
+        db.execSQL(CREATE_INDEX_DATE);
+        createFeeds(db);
+        createSearch(db);
+        createReadState(db, 0);
+        createCounts(db);
+        createDeleted(db);
         seedData(db);
     }
 
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        if (!db.isReadOnly()
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            enableWriteAheadLogging(db);
+        }
+    }
+
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        if (newVersion == 4) {
-            // do our best to keep the date, using alter tables
-            if (oldVersion == 3) {
-                db.execSQL(ALTER_ADD_COL_READ);
-            } else if (oldVersion == 2) {
-                db.execSQL(ALTER_ADD_COL_DATE);
-                db.execSQL(ALTER_ADD_COL_READ);
-            }
-        } else {
+        if (oldVersion < 2) {
             Log.w(DEBUG_TAG,
                     "Upgrading database. Existing contents will be lost. ["
                             + oldVersion + "]->[" + newVersion + "]");
             db.execSQL("DROP TABLE IF EXISTS " + TABLE_TUTORIALS);
             onCreate(db);
+            return;
+        }
+        // do our best to keep the data, stepping through each version
+        switch (oldVersion) {
+        case 2:
+            db.execSQL(ALTER_ADD_COL_DATE);
+            // fall through
+        case 3:
+            db.execSQL(ALTER_ADD_COL_READ);
+            // fall through
+        case 4:
+            db.execSQL(CREATE_INDEX_READ_DATE);
+            db.execSQL(CREATE_INDEX_DATE);
+            // fall through
+        case 5:
+            createFeeds(db);
+            // fall through
+        case 6:
+            createSearch(db);
+            db.execSQL(FILL_SEARCH);
+            // fall through
+        case 7:
+            migrateReadState(db);
+            // fall through
+        case 8:
+            createCounts(db);
+            // fall through
+        case 9:
+            createDeleted(db);
+        }
+    }
+
+    /**
+     * Switches the database to write-ahead logging. Queries outside a
+     * transaction then run on the platform's pooled read connections and
+     * see the last commit, instead of waiting for a long ingestion
+     * transaction on the write connection to finish.
+     * 
+     * @param db
+     *            The open, writable database
+     */
+    private void enableWriteAheadLogging(SQLiteDatabase db) {
+        if (!db.enableWriteAheadLogging()) {
+            Log.w(DEBUG_TAG, "Write-ahead logging not available");
+            return;
+        }
+        Resources res = mContext.getResources();
+        // a commit is durable once the log is synced at checkpoints; a
+        // crash can lose the last commits but never corrupts the database
+        db.execSQL("PRAGMA synchronous = NORMAL");
+        // these pragmas return the new value, so they can't go to execSQL()
+        DatabaseUtils.longForQuery(db, "PRAGMA wal_autocheckpoint = "
+                + res.getInteger(R.integer.wal_checkpoint_pages), null);
+        DatabaseUtils.longForQuery(db, "PRAGMA journal_size_limit = "
+                + res.getInteger(R.integer.wal_size_limit), null);
+    }
+
+    /**
+     * Creates the feeds table, subscribed to the default feed
+     * 
+     * @param db
+     *            The open database
+     */
+    private void createFeeds(SQLiteDatabase db) {
+        db.execSQL(CREATE_TABLE_FEEDS);
+        ContentValues defaultFeed = new ContentValues();
+        defaultFeed.put(COL_URL, mContext.getString(R.string.default_url)
+                .trim());
+        db.insert(TABLE_FEEDS, null, defaultFeed);
+    }
+
+    /**
+     * Creates the full-text index of the titles and the triggers keeping it
+     * up to date; the caller fills it from any existing rows
+     * 
+     * @param db
+     *            The open database
+     */
+    private void createSearch(SQLiteDatabase db) {
+        db.execSQL(CREATE_TABLE_SEARCH);
+        for (String trigger : CREATE_TRIGGERS_SEARCH) {
+            db.execSQL(trigger);
         }
     }
 
+    /**
+     * Creates the read state tables, their cleanup trigger and the view
+     * 
+     * @param db
+     *            The open database
+     * @param watermark
+     *            The highest id to start out read
+     */
+    private void createReadState(SQLiteDatabase db, long watermark) {
+        db.execSQL(CREATE_TABLE_WATERMARK);
+        db.execSQL("INSERT INTO " + TABLE_WATERMARK + " VALUES (" + watermark
+                + ");");
+        db.execSQL(CREATE_TABLE_READ_EXCEPTIONS);
+        db.execSQL(CREATE_TRIGGER_READ_EXCEPTIONS);
+        db.execSQL(CREATE_VIEW_TUTORIALS);
+    }
+
+    /**
+     * Creates the counts row, filled from any existing rows, and the
+     * triggers keeping it up to date
+     * 
+     * @param db
+     *            The open database
+     */
+    private void createCounts(SQLiteDatabase db) {
+        db.execSQL(CREATE_TABLE_COUNTS);
+        db.execSQL(FILL_COUNTS);
+        for (String trigger : CREATE_TRIGGERS_COUNTS) {
+            db.execSQL(trigger);
+        }
+    }
+
+    /**
+     * Creates the tombstone table and the trigger skipping inserts of the
+     * urls in it
+     * 
+     * @param db
+     *            The open database
+     */
+    private void createDeleted(SQLiteDatabase db) {
+        db.execSQL(CREATE_TABLE_DELETED);
+        db.execSQL(CREATE_TRIGGER_DELETED);
+    }
+
+    /**
+     * @return An expression for the number of tutorials without a read
+     *         exception above the from watermark and at or below the to
+     *         watermark, as seen from a trigger on the watermark table
+     */
+    private static String countBetween(String from, String to) {
+        return "((SELECT count(*) FROM " + TABLE_TUTORIALS + " WHERE " + ID
+                + " > " + from + "." + COL_WATERMARK + " AND " + ID + " <= "
+                + to + "." + COL_WATERMARK + ") - (SELECT count(*) FROM "
+                + TABLE_READ_EXCEPTIONS + " WHERE " + COL_TUT_ID + " > "
+                + from + "." + COL_WATERMARK + " AND " + COL_TUT_ID + " <= "
+                + to + "." + COL_WATERMARK + "))";
+    }
+
+    /**
+     * Moves the read column into a watermark and exceptions. Of the two
+     * natural watermarks, just below the oldest unread row or at the
+     * newest read one, the one needing fewer exceptions is used.
+     * 
+     * @param db
+     *            The open database
+     */
+    private void migrateReadState(SQLiteDatabase db) {
+        long belowUnread = DatabaseUtils.longForQuery(db, "SELECT coalesce("
+                + "(SELECT min(" + ID + ") - 1 FROM " + TABLE_TUTORIALS
+                + " WHERE " + COL_READ + "=0), (SELECT max(" + ID
+                + ") FROM " + TABLE_TUTORIALS + "), 0)", null);
+        long atRead = DatabaseUtils.longForQuery(db, "SELECT coalesce(max("
+                + ID + "), 0) FROM " + TABLE_TUTORIALS + " WHERE " + COL_READ
+                + "=1", null);
+        long watermark = countExceptions(db, belowUnread) <= countExceptions(
+                db, atRead) ? belowUnread : atRead;
+
+        createReadState(db, watermark);
+        db.execSQL("INSERT INTO " + TABLE_READ_EXCEPTIONS + " SELECT " + ID
+                + ", " + COL_READ + " FROM " + TABLE_TUTORIALS + " WHERE "
+                + COL_READ + " != (" + ID + " <= " + watermark + ");");
+        db.execSQL("DROP INDEX IF EXISTS " + INDEX_READ_DATE + ";");
+        Log.i(DEBUG_TAG, "Read state moved to watermark " + watermark);
+    }
+
+    private static long countExceptions(SQLiteDatabase db, long watermark) {
+        return DatabaseUtils.longForQuery(db, "SELECT count(*) FROM "
+                + TABLE_TUTORIALS + " WHERE " + COL_READ + " != (" + ID
+                + " <= " + watermark + ")", null);
+    }
+
     /**
      * Create sample data to use
      * 
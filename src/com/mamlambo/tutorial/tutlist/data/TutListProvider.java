@@ -30,28 +30,55 @@
  */
 package com.mamlambo.tutorial.tutlist.data;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
-import android.database.SQLException;
-import android.database.sqlite.SQLiteConstraintException;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Parcelable;
 import android.text.TextUtils;
 import android.util.Log;
 
+import com.mamlambo.tutorial.tutlist.R;
+
 public class TutListProvider extends ContentProvider {
 
     private TutListDatabase mDB;
+    private TutListCache mCache;
+
+    // set while applyBatch() runs on a thread, so the individual operations
+    // hold back their change notifications until the batch commits
+    private final ThreadLocal<Boolean> mApplyingBatch = new ThreadLocal<Boolean>();
+    private final ThreadLocal<Boolean> mBatchChanged = new ThreadLocal<Boolean>();
 
     private static final String AUTHORITY = "com.mamlambo.tutorial.tutlist.data.TutListProvider";
     public static final int TUTORIALS = 100;
     public static final int TUTORIAL_ID = 110;
+    public static final int LATEST = 120;
+    public static final int UNREAD_COUNT = 130;
+    public static final int CACHE_STATS = 140;
+    public static final int EXPIRED = 150;
+    public static final int STATS = 160;
+    public static final int FEEDS = 200;
+    public static final int FEED_ID = 210;
+    public static final int SEARCH = 300;
 
     private static final String TUTORIALS_BASE_PATH = "tutorials";
     public static final Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY
@@ -62,18 +89,164 @@ public class TutListProvider extends ContentProvider {
     public static final String CONTENT_TYPE = ContentResolver.CURSOR_DIR_BASE_TYPE
             + "/mt-tutorial";
 
+    // the newest tutorial, with the same columns as a TUTORIAL_ID row
+    public static final Uri LATEST_URI = Uri.withAppendedPath(CONTENT_URI,
+            TutListCache.LATEST);
+    // one row with the number of unread tutorials in COL_COUNT
+    public static final Uri UNREAD_COUNT_URI = Uri.withAppendedPath(
+            CONTENT_URI, TutListCache.UNREAD_COUNT);
+    public static final String COL_COUNT = "count";
+    // one row with the hot-row cache counters
+    public static final Uri CACHE_STATS_URI = Uri.withAppendedPath(
+            CONTENT_URI, "cache_stats");
+    public static final String[] CACHE_STATS_COLUMNS = { "hits", "misses",
+            "evictions", "size" };
+    // one row with the trigger-maintained counts: COL_TOTAL, COL_UNREAD
+    // and COL_INSERTED of TutListDatabase; reading it costs the same
+    // however many tutorials there are
+    public static final Uri STATS_URI = Uri.withAppendedPath(CONTENT_URI,
+            "stats");
+    // delete() on this applies the retention policy and compacts the
+    // database; the selection is ignored
+    public static final Uri EXPIRED_URI = Uri.withAppendedPath(CONTENT_URI,
+            "expired");
+
+    // call() methods for small fixed results, answered with a Bundle so
+    // no cursor or CursorWindow is set up; the value is under CALL_RESULT.
+    // call() needs API 11, the static helpers below fall back to query().
+    public static final String METHOD_LATEST_TITLE = "latest_title";
+    public static final String METHOD_UNREAD_COUNT = "unread_count";
+    // arg: the tutorial's id
+    public static final String METHOD_URL_BY_ID = "url_by_id";
+    public static final String METHOD_LAST_SYNC = "last_sync";
+    // the STATS_URI row, under the TutListDatabase column names
+    public static final String METHOD_STATS = "stats";
+    public static final String CALL_RESULT = "result";
+    // bulkInsert() with the rows as a ContentValues array under CALL_VALUES
+    // and the QUERY_CONFLICT value as arg; answers with the row counts
+    // under CALL_INSERTED, CALL_UPDATED and CALL_IGNORED
+    public static final String METHOD_INSERT_TUTORIALS = "insert_tutorials";
+    public static final String CALL_VALUES = "values";
+    public static final String CALL_INSERTED = "inserted";
+    public static final String CALL_UPDATED = "updated";
+    public static final String CALL_IGNORED = "ignored";
+
+    // the columns kept for a cached row; TUTORIAL_ID queries for any of
+    // these without a selection are served from the cache
+    private static final String[] ROW_COLUMNS = TutListStatements.ROW_COLUMNS;
+
+    // the fixed queries, routed here from the uris and values they match;
+    // any other selection goes through a query builder
+    private TutListStatements mStatements;
+
+    // an item uri's id, bound in front of any selection arguments
+    private static final String WHERE_ID = TutListDatabase.ID + "=?";
+
+    private static final String FEEDS_BASE_PATH = "feeds";
+    public static final Uri FEEDS_CONTENT_URI = Uri.parse("content://"
+            + AUTHORITY + "/" + FEEDS_BASE_PATH);
+
+    public static final String STATS_CONTENT_ITEM_TYPE = ContentResolver.CURSOR_ITEM_BASE_TYPE
+            + "/mt-tutorial-stats";
+    public static final String FEEDS_CONTENT_ITEM_TYPE = ContentResolver.CURSOR_ITEM_BASE_TYPE
+            + "/mt-feed";
+    public static final String FEEDS_CONTENT_TYPE = ContentResolver.CURSOR_DIR_BASE_TYPE
+            + "/mt-feed";
+
+    // search/<text>: tutorials whose titles contain every word of the text,
+    // each word also as a prefix, best matches first
+    private static final String SEARCH_BASE_PATH = "search";
+    public static final Uri SEARCH_URI = Uri.parse("content://" + AUTHORITY
+            + "/" + SEARCH_BASE_PATH);
+
+    private static final String SEARCH_TABLES = TutListDatabase.TABLE_SEARCH
+            + " JOIN " + TutListDatabase.VIEW_TUTORIALS + " ON ("
+            + TutListDatabase.VIEW_TUTORIALS + "." + TutListDatabase.ID
+            + " = " + TutListDatabase.TABLE_SEARCH + ".docid)";
+    // offsets() lists four numbers per matched term, so counting its spaces
+    // ranks titles matching more often first; newer ones break ties
+    private static final String SEARCH_SORT_ORDER = "length(offsets("
+            + TutListDatabase.TABLE_SEARCH + ")) - length(replace(offsets("
+            + TutListDatabase.TABLE_SEARCH + "), ' ', '')) DESC, "
+            + TutListDatabase.VIEW_TUTORIALS + "." + TutListDatabase.COL_DATE
+            + " DESC";
+    private static final HashMap<String, String> sSearchProjection = new HashMap<String, String>();
+
     private static final UriMatcher sURIMatcher = new UriMatcher(
             UriMatcher.NO_MATCH);
 
     private static final String DEBUG_TAG = "TutListProvider";
+
+    // compiled once per bulkInsert() and re-bound for every row
+    private static final String INSERT_TUTORIAL = "INSERT OR IGNORE INTO "
+            + TutListDatabase.TABLE_TUTORIALS + " ("
+            + TutListDatabase.COL_TITLE + ", " + TutListDatabase.COL_URL + ", "
+            + TutListDatabase.COL_DATE + ") VALUES (?, ?, "
+            + "coalesce(?, strftime('%s','now')))";
+
+    private static final String SELECT_CHANGES = "SELECT changes()";
+
+    // before API 8, executeInsert() returns the last inserted id even for a
+    // row INSERT OR IGNORE skipped; changes() tells the two apart there
+    private static final boolean INSERT_REPORTS_IGNORED =
+            Build.VERSION.SDK_INT >= Build.VERSION_CODES.FROYO;
+
+    // conflict handling for insert() and bulkInsert(), given as a query
+    // parameter on CONTENT_URI; CONFLICT_IGNORE is the default
+    public static final String QUERY_CONFLICT = "conflict";
+    public static final String CONFLICT_IGNORE = "ignore";
+    public static final String CONFLICT_REPLACE = "replace";
+
+    // the CONFLICT_REPLACE half of an upsert: updates the row with the same
+    // url in place, keeping its id and read state, and only if it differs.
+    // Both columns are NOT NULL, so a null in the new row keeps the stored
+    // value rather than failing the statement, and the whole batch with it.
+    private static final String UPDATE_TUTORIAL = "UPDATE "
+            + TutListDatabase.TABLE_TUTORIALS + " SET "
+            + TutListDatabase.COL_TITLE + " = coalesce(?1, "
+            + TutListDatabase.COL_TITLE + "), " + TutListDatabase.COL_DATE
+            + " = coalesce(?3, " + TutListDatabase.COL_DATE + ") WHERE "
+            + TutListDatabase.COL_URL + " = ?2 AND ("
+            + TutListDatabase.COL_TITLE + " <> coalesce(?1, "
+            + TutListDatabase.COL_TITLE + ") OR " + TutListDatabase.COL_DATE
+            + " <> coalesce(?3, " + TutListDatabase.COL_DATE + "))";
+
+    // keyset paging for TUTORIALS: "limit" rows, newest first, strictly
+    // after the row given by "before" as "tut_date,_id"
+    public static final String QUERY_LIMIT = "limit";
+    public static final String QUERY_BEFORE = "before";
+    public static final String PAGE_SORT_ORDER = TutListDatabase.COL_DATE
+            + " DESC, " + TutListDatabase.ID + " DESC";
+
     static {
         sURIMatcher.addURI(AUTHORITY, TUTORIALS_BASE_PATH, TUTORIALS);
         sURIMatcher.addURI(AUTHORITY, TUTORIALS_BASE_PATH + "/#", TUTORIAL_ID);
+        sURIMatcher.addURI(AUTHORITY, TUTORIALS_BASE_PATH + "/"
+                + TutListCache.LATEST, LATEST);
+        sURIMatcher.addURI(AUTHORITY, TUTORIALS_BASE_PATH + "/"
+                + TutListCache.UNREAD_COUNT, UNREAD_COUNT);
+        sURIMatcher.addURI(AUTHORITY, TUTORIALS_BASE_PATH + "/cache_stats",
+                CACHE_STATS);
+        sURIMatcher.addURI(AUTHORITY, TUTORIALS_BASE_PATH + "/expired",
+                EXPIRED);
+        sURIMatcher.addURI(AUTHORITY, TUTORIALS_BASE_PATH + "/stats", STATS);
+        sURIMatcher.addURI(AUTHORITY, FEEDS_BASE_PATH, FEEDS);
+        sURIMatcher.addURI(AUTHORITY, FEEDS_BASE_PATH + "/#", FEED_ID);
+        sURIMatcher.addURI(AUTHORITY, SEARCH_BASE_PATH + "/*", SEARCH);
+
+        // the fts table has a title column too
+        for (String column : ROW_COLUMNS) {
+            sSearchProjection.put(column, TutListDatabase.VIEW_TUTORIALS
+                    + "." + column + " AS " + column);
+        }
     }
 
     @Override
     public boolean onCreate() {
         mDB = new TutListDatabase(getContext());
+        mStatements = new TutListStatements(mDB);
+        mCache = new TutListCache(getContext().getResources().getInteger(
+                R.integer.provider_cache_entries));
         return true;
     }
 
@@ -82,23 +255,89 @@ public class TutListProvider extends ContentProvider {
             String[] selectionArgs, String sortOrder) {
 
         SQLiteQueryBuilder queryBuilder = new SQLiteQueryBuilder();
-        queryBuilder.setTables(TutListDatabase.TABLE_TUTORIALS);
+        String limit = null;
 
         int uriType = sURIMatcher.match(uri);
         switch (uriType) {
         case TUTORIAL_ID:
-            queryBuilder.appendWhere(TutListDatabase.ID + "="
-                    + uri.getLastPathSegment());
+            if (TextUtils.isEmpty(selection) && isRowProjection(projection)) {
+                return queryCached(uri,
+                        Long.valueOf(uri.getLastPathSegment()), projection);
+            }
+            queryBuilder.setTables(TutListDatabase.VIEW_TUTORIALS);
+            queryBuilder.appendWhere(WHERE_ID);
+            selectionArgs = withIdArg(uri, selectionArgs);
             break;
         case TUTORIALS:
-            // no filter
+            queryBuilder.setTables(TutListDatabase.VIEW_TUTORIALS);
+            limit = uri.getQueryParameter(QUERY_LIMIT);
+            if (limit != null) {
+                // a page; the key columns decide the order
+                limit = String.valueOf(Integer.parseInt(limit));
+                sortOrder = PAGE_SORT_ORDER;
+                String before = uri.getQueryParameter(QUERY_BEFORE);
+                if (before != null) {
+                    queryBuilder.appendWhere(keysetWhere(before));
+                }
+            }
+            break;
+        case LATEST:
+            if (!isRowProjection(projection)) {
+                throw new IllegalArgumentException("Unknown column for " + uri);
+            }
+            return queryCached(uri, TutListCache.LATEST, projection);
+        case UNREAD_COUNT:
+            return queryCached(uri, TutListCache.UNREAD_COUNT,
+                    new String[] { COL_COUNT });
+        case CACHE_STATS:
+            long[] counters = mCache.getCounters();
+            MatrixCursor stats = new MatrixCursor(CACHE_STATS_COLUMNS, 1);
+            stats.addRow(new Object[] { counters[0], counters[1],
+                    counters[2], counters[3] });
+            return stats;
+        case STATS:
+            queryBuilder.setTables(TutListDatabase.TABLE_COUNTS);
+            // the counts change with the tutorials
+            uri = CONTENT_URI;
+            break;
+        case SEARCH:
+            String match = TutListSearch.toMatchQuery(uri
+                    .getLastPathSegment());
+            if (match.length() == 0) {
+                // nothing to search for; an empty cursor with the columns
+                // asked for
+                return new MatrixCursor(projection == null ? ROW_COLUMNS
+                        : projection, 0);
+            }
+            queryBuilder.setTables(SEARCH_TABLES);
+            queryBuilder.setProjectionMap(sSearchProjection);
+            queryBuilder.appendWhere(TutListDatabase.TABLE_SEARCH + " MATCH ");
+            queryBuilder.appendWhereEscapeString(match);
+            limit = uri.getQueryParameter(QUERY_LIMIT);
+            if (limit != null) {
+                limit = String.valueOf(Integer.parseInt(limit));
+            }
+            if (sortOrder == null) {
+                sortOrder = SEARCH_SORT_ORDER;
+            }
+            // results change with the tutorials, not the search uri
+            uri = CONTENT_URI;
+            break;
+        case FEED_ID:
+            queryBuilder.setTables(TutListDatabase.TABLE_FEEDS);
+            queryBuilder.appendWhere(WHERE_ID);
+            selectionArgs = withIdArg(uri, selectionArgs);
+            break;
+        case FEEDS:
+            queryBuilder.setTables(TutListDatabase.TABLE_FEEDS);
             break;
         default:
             throw new IllegalArgumentException("Unknown URI");
         }
 
         Cursor cursor = queryBuilder.query(mDB.getReadableDatabase(),
-                projection, selection, selectionArgs, null, null, sortOrder);
+                projection, selection, selectionArgs, null, null, sortOrder,
+                limit);
         cursor.setNotificationUri(getContext().getContentResolver(), uri);
         return cursor;
     }
@@ -111,23 +350,50 @@ public class TutListProvider extends ContentProvider {
         switch (uriType) {
         case TUTORIALS:
             rowsAffected = sqlDB.delete(TutListDatabase.TABLE_TUTORIALS,
-                    selection, selectionArgs);
+                    inView(selection), selectionArgs);
+            if (rowsAffected > 0) {
+                TutListChangeLog.record(TutListChangeLog.RESET, -1);
+                mCache.clear();
+            }
             break;
         case TUTORIAL_ID:
             String id = uri.getLastPathSegment();
-            if (TextUtils.isEmpty(selection)) {
-                rowsAffected = sqlDB.delete(TutListDatabase.TABLE_TUTORIALS,
-                        TutListDatabase.ID + "=" + id, null);
-            } else {
-                rowsAffected = sqlDB.delete(TutListDatabase.TABLE_TUTORIALS,
-                        selection + " and " + TutListDatabase.ID + "=" + id,
-                        selectionArgs);
+            rowsAffected = sqlDB.delete(TutListDatabase.TABLE_TUTORIALS,
+                    inView(whereId(selection)), withIdArg(uri, selectionArgs));
+            if (rowsAffected > 0) {
+                TutListChangeLog.record(TutListChangeLog.DELETE,
+                        Long.parseLong(id));
+                mCache.rowDeleted(Long.parseLong(id));
             }
             break;
+        case EXPIRED:
+            TutListCompactor.Result result = new TutListCompactor(getContext()
+                    .getResources()).compact(sqlDB);
+            Log.i(DEBUG_TAG, "Compaction reclaimed " + result);
+            TutListSharedPrefs.setLastCompaction(getContext(),
+                    result.rowsDeleted, result.bytesReclaimed);
+            rowsAffected = result.rowsDeleted;
+            if (rowsAffected > 0) {
+                TutListChangeLog.record(TutListChangeLog.RESET, -1);
+                mCache.clear();
+            }
+            // observers watch the tutorials, not this uri
+            uri = CONTENT_URI;
+            break;
+        case FEEDS:
+            rowsAffected = sqlDB.delete(TutListDatabase.TABLE_FEEDS, selection,
+                    selectionArgs);
+            break;
+        case FEED_ID:
+            rowsAffected = sqlDB.delete(TutListDatabase.TABLE_FEEDS,
+                    whereId(selection), withIdArg(uri, selectionArgs));
+            break;
         default:
             throw new IllegalArgumentException("Unknown or Invalid URI " + uri);
         }
-        getContext().getContentResolver().notifyChange(uri, null);
+        if (rowsAffected > 0) {
+            notifyChange(uri);
+        }
         return rowsAffected;
     }
 
@@ -138,33 +404,217 @@ public class TutListProvider extends ContentProvider {
         case TUTORIALS:
             return CONTENT_TYPE;
         case TUTORIAL_ID:
+        case LATEST:
             return CONTENT_ITEM_TYPE;
+        case STATS:
+            return STATS_CONTENT_ITEM_TYPE;
+        case SEARCH:
+            return CONTENT_TYPE;
+        case FEEDS:
+            return FEEDS_CONTENT_TYPE;
+        case FEED_ID:
+            return FEEDS_CONTENT_ITEM_TYPE;
         default:
             return null;
         }
     }
 
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        Bundle result = new Bundle();
+        if (METHOD_LATEST_TITLE.equals(method)) {
+            Object[] row = getCached(TutListCache.LATEST);
+            result.putString(CALL_RESULT, row == null ? null
+                    : (String) row[columnIndex(TutListDatabase.COL_TITLE)]);
+        } else if (METHOD_UNREAD_COUNT.equals(method)) {
+            Object[] count = getCached(TutListCache.UNREAD_COUNT);
+            result.putLong(CALL_RESULT, (Long) count[0]);
+        } else if (METHOD_URL_BY_ID.equals(method)) {
+            Object[] row = getCached(Long.valueOf(arg));
+            result.putString(CALL_RESULT, row == null ? null
+                    : (String) row[columnIndex(TutListDatabase.COL_URL)]);
+        } else if (METHOD_LAST_SYNC.equals(method)) {
+            result.putLong(CALL_RESULT,
+                    TutListSharedPrefs.getLastSyncTime(getContext()));
+        } else if (METHOD_STATS.equals(method)) {
+            long[] counts = mStatements.readCounts();
+            if (counts != null) {
+                result.putLong(TutListDatabase.COL_TOTAL, counts[0]);
+                result.putLong(TutListDatabase.COL_UNREAD, counts[1]);
+                result.putLong(TutListDatabase.COL_INSERTED, counts[2]);
+            }
+        } else if (METHOD_INSERT_TUTORIALS.equals(method)) {
+            Parcelable[] rows = extras.getParcelableArray(CALL_VALUES);
+            ContentValues[] values = new ContentValues[rows.length];
+            System.arraycopy(rows, 0, values, 0, rows.length);
+            InsertCounts counts = insertTutorials(CONTENT_URI,
+                    CONFLICT_REPLACE.equals(arg), values);
+            result.putInt(CALL_INSERTED, counts.inserted);
+            result.putInt(CALL_UPDATED, counts.updated);
+            result.putInt(CALL_IGNORED, counts.ignored);
+        } else {
+            throw new IllegalArgumentException("Unknown method " + method);
+        }
+        return result;
+    }
+
+    /**
+     * Inserts a row. A tutorial whose url is already stored is skipped, or
+     * updated in place when the uri asks for CONFLICT_REPLACE.
+     * 
+     * @return The inserted or updated row, or null if nothing changed: an
+     *         ignored duplicate, or with CONFLICT_REPLACE a row that didn't
+     *         differ. insertTutorials() tells all three cases apart.
+     */
     @Override
     public Uri insert(Uri uri, ContentValues values) {
         int uriType = sURIMatcher.match(uri);
+        SQLiteDatabase sqlDB = mDB.getWritableDatabase();
+        if (uriType == FEEDS) {
+            long feedID = insertOrIgnore(sqlDB, TutListDatabase.TABLE_FEEDS,
+                    values);
+            if (feedID > 0) {
+                notifyChange(uri);
+                return ContentUris.withAppendedId(FEEDS_CONTENT_URI, feedID);
+            }
+            return null;
+        }
         if (uriType != TUTORIALS) {
             throw new IllegalArgumentException("Invalid URI for insert");
         }
+        boolean replace = isReplace(uri);
+        // new rows start unread; the read flag isn't a table column
+        boolean read = isRead(values);
+        values = new ContentValues(values);
+        values.remove(TutListDatabase.COL_READ);
+        long newID = insertOrIgnore(sqlDB, TutListDatabase.TABLE_TUTORIALS,
+                values);
+        if (newID > 0) {
+            if (read) {
+                mStatements.setRead(newID, true);
+            }
+            TutListChangeLog.record(TutListChangeLog.INSERT, newID);
+            mCache.rowsInserted();
+            notifyChange(uri);
+            return ContentUris.withAppendedId(CONTENT_URI, newID);
+        }
+        String url = values.getAsString(TutListDatabase.COL_URL);
+        if (replace && url != null && updateByUrl(sqlDB, values) > 0) {
+            long existingID = DatabaseUtils.longForQuery(sqlDB, "SELECT "
+                    + TutListDatabase.ID + " FROM "
+                    + TutListDatabase.TABLE_TUTORIALS + " WHERE "
+                    + TutListDatabase.COL_URL + "=?", new String[] { url });
+            TutListChangeLog.record(TutListChangeLog.UPDATE, existingID);
+            mCache.rowUpdated(existingID, false, true);
+            notifyChange(uri);
+            return ContentUris.withAppendedId(CONTENT_URI, existingID);
+        }
+        // duplicate url (or unchanged row); nothing to tell observers
+        return null;
+    }
+
+    /**
+     * Inserts all rows inside a single transaction, reusing compiled
+     * statements. Rows whose url is already stored are skipped, or updated
+     * in place when the uri asks for CONFLICT_REPLACE. Observers are notified
+     * once, and only if a row actually changed.
+     * 
+     * @return The number of rows inserted or updated; insertTutorials()
+     *         reports the two, and the rows ignored, separately
+     */
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+        int uriType = sURIMatcher.match(uri);
+        if (uriType != TUTORIALS) {
+            throw new IllegalArgumentException("Invalid URI for bulk insert");
+        }
+        InsertCounts counts = insertTutorials(uri, isReplace(uri), values);
+        return counts.inserted + counts.updated;
+    }
+
+    /**
+     * The body of bulkInsert() and METHOD_INSERT_TUTORIALS
+     * 
+     * @param uri
+     *            The uri to notify observers on
+     */
+    private InsertCounts insertTutorials(Uri uri, boolean replace,
+            ContentValues[] values) {
         SQLiteDatabase sqlDB = mDB.getWritableDatabase();
+        int rowsInserted = 0;
+        int rowsUpdated = 0;
+        sqlDB.beginTransaction();
+        SQLiteStatement insert = null;
+        SQLiteStatement update = null;
+        SQLiteStatement changes = null;
         try {
-            long newID = sqlDB.insertOrThrow(TutListDatabase.TABLE_TUTORIALS,
-                    null, values);
-            if (newID > 0) {
-                Uri newUri = ContentUris.withAppendedId(uri, newID);
-                getContext().getContentResolver().notifyChange(uri, null);
-                return newUri;
-            } else {
-                throw new SQLException("Failed to insert row into " + uri);
+            insert = sqlDB.compileStatement(INSERT_TUTORIAL);
+            if (replace || !INSERT_REPORTS_IGNORED) {
+                changes = sqlDB.compileStatement(SELECT_CHANGES);
+            }
+            if (replace) {
+                update = sqlDB.compileStatement(UPDATE_TUTORIAL);
+            }
+            for (ContentValues tutorial : values) {
+                bindTutorial(insert, tutorial);
+                if (executeInsert(insert, changes) > 0) {
+                    rowsInserted++;
+                } else if (replace) {
+                    bindTutorial(update, tutorial);
+                    update.execute();
+                    rowsUpdated += changes.simpleQueryForLong();
+                }
+            }
+            sqlDB.setTransactionSuccessful();
+        } finally {
+            closeStatements(insert, update, changes);
+            sqlDB.endTransaction();
+        }
+        int rowsIgnored = values.length - rowsInserted - rowsUpdated;
+        Log.d(DEBUG_TAG, "Bulk insert: " + rowsInserted + " inserted, "
+                + rowsUpdated + " updated, " + rowsIgnored + " ignored.");
+        if (rowsUpdated > 0) {
+            // rows were matched by url, so their ids aren't known here
+            TutListChangeLog.record(TutListChangeLog.RESET, -1);
+            mCache.clear();
+        } else if (rowsInserted > 0) {
+            TutListChangeLog.record(TutListChangeLog.INSERT, -1);
+            mCache.rowsInserted();
+        }
+        if (rowsInserted + rowsUpdated > 0) {
+            notifyChange(uri);
+        }
+        return new InsertCounts(rowsInserted, rowsUpdated, rowsIgnored);
+    }
+
+    /**
+     * Applies all operations inside a single transaction and sends one
+     * change notification once the transaction has committed.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(
+            ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase sqlDB = mDB.getWritableDatabase();
+        boolean changed = false;
+        mApplyingBatch.set(Boolean.TRUE);
+        mBatchChanged.set(Boolean.FALSE);
+        // the operations invalidate cache entries before the batch commits
+        mCache.beginWrite();
+        sqlDB.beginTransaction();
+        try {
+            ContentProviderResult[] results = super.applyBatch(operations);
+            sqlDB.setTransactionSuccessful();
+            changed = mBatchChanged.get();
+            return results;
+        } finally {
+            sqlDB.endTransaction();
+            mCache.endWrite();
+            mApplyingBatch.set(Boolean.FALSE);
+            if (changed) {
+                notifyChange(CONTENT_URI);
             }
-        } catch (SQLiteConstraintException e) {
-            Log.i(DEBUG_TAG, "Ignoring constraint failure.");
         }
-        return null;
     }
 
     @Override
@@ -177,28 +627,667 @@ public class TutListProvider extends ContentProvider {
 
         switch (uriType) {
         case TUTORIAL_ID:
-            String id = uri.getLastPathSegment();
-            StringBuilder modSelection = new StringBuilder(TutListDatabase.ID
-                    + "=" + id);
-
-            if (!TextUtils.isEmpty(selection)) {
-                modSelection.append(" AND " + selection);
+            long id = Long.parseLong(uri.getLastPathSegment());
+            if (TextUtils.isEmpty(selection) && isReadOnly(values)) {
+                rowsAffected = mStatements.setRead(id, isRead(values));
+                if (rowsAffected > 0) {
+                    recordUpdates(new long[] { id }, values);
+                }
+            } else {
+                rowsAffected = updateTutorials(sqlDB, values,
+                        whereId(selection), withIdArg(uri, selectionArgs));
             }
-
-            rowsAffected = sqlDB.update(TutListDatabase.TABLE_TUTORIALS,
-                    values, modSelection.toString(), null);
             break;
         case TUTORIALS:
-            rowsAffected = sqlDB.update(TutListDatabase.TABLE_TUTORIALS,
-                    values, selection, selectionArgs);
+            if (TextUtils.isEmpty(selection) && isReadOnly(values)
+                    && isRead(values)) {
+                // only moves the watermark, however many rows there are
+                rowsAffected = mStatements.markAllRead();
+                if (rowsAffected > 0) {
+                    recordUpdates(null, values);
+                }
+            } else {
+                rowsAffected = updateTutorials(sqlDB, values, selection,
+                        selectionArgs);
+            }
+            break;
+        case FEED_ID:
+            rowsAffected = sqlDB.update(TutListDatabase.TABLE_FEEDS, values,
+                    whereId(selection), withIdArg(uri, selectionArgs));
+            break;
+        case FEEDS:
+            rowsAffected = sqlDB.update(TutListDatabase.TABLE_FEEDS, values,
+                    selection, selectionArgs);
             break;
         default:
             throw new IllegalArgumentException("Unknown or Invalid URI");
         }
-        getContext().getContentResolver().notifyChange(uri, null);
+        if (rowsAffected > 0) {
+            notifyChange(uri);
+        }
         return rowsAffected;
     }
 
+    /**
+     * Updates the tutorials matching a selection, which may use any column
+     * of VIEW_TUTORIALS; the read flag goes to the read state, the other
+     * columns to the table
+     * 
+     * @return The number of rows changed
+     */
+    private int updateTutorials(SQLiteDatabase sqlDB, ContentValues values,
+            String selection, String[] selectionArgs) {
+        ContentValues columns = new ContentValues(values);
+        columns.remove(TutListDatabase.COL_READ);
+        boolean setsRead = values.containsKey(TutListDatabase.COL_READ);
+        boolean read = isRead(values);
+        // the selection may stop matching once updated, so find the rows
+        // first
+        long[] ids;
+        int rowsAffected = 0;
+        sqlDB.beginTransaction();
+        try {
+            ids = findTutorialIds(sqlDB, selection, selectionArgs);
+            for (long id : ids) {
+                int changed = 0;
+                if (columns.size() > 0) {
+                    changed = sqlDB.update(TutListDatabase.TABLE_TUTORIALS,
+                            columns, WHERE_ID,
+                            new String[] { String.valueOf(id) });
+                }
+                if (setsRead) {
+                    changed |= mStatements.setRead(id, read);
+                }
+                rowsAffected += changed;
+            }
+            sqlDB.setTransactionSuccessful();
+        } finally {
+            sqlDB.endTransaction();
+        }
+        // only once committed, or a reader could cache the old rows
+        if (rowsAffected > 0) {
+            recordUpdates(ids, values);
+        }
+        return rowsAffected;
+    }
+
+    /**
+     * Finds the tutorials matching a selection on VIEW_TUTORIALS
+     * 
+     * @return The ids, empty if none match
+     */
+    private long[] findTutorialIds(SQLiteDatabase sqlDB, String selection,
+            String[] selectionArgs) {
+        Cursor cursor = sqlDB.query(TutListDatabase.VIEW_TUTORIALS,
+                new String[] { TutListDatabase.ID }, selection,
+                selectionArgs, null, null, null);
+        try {
+            long[] ids = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getLong(0);
+            }
+            return ids;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Tells the change log and the cache about updated rows
+     * 
+     * @param ids
+     *            The rows, or null if they may be all of them
+     */
+    private void recordUpdates(long[] ids, ContentValues values) {
+        if (ids == null || ids.length > TutListChangeLog.CAPACITY / 2) {
+            TutListChangeLog.record(TutListChangeLog.RESET, -1);
+            mCache.clear();
+            return;
+        }
+        boolean readChanged = values.containsKey(TutListDatabase.COL_READ);
+        boolean dateChanged = values.containsKey(TutListDatabase.COL_DATE);
+        for (long id : ids) {
+            TutListChangeLog.record(TutListChangeLog.UPDATE, id);
+            mCache.rowUpdated(id, readChanged, dateChanged);
+        }
+    }
+
+    /**
+     * Builds a search uri for text typed by the user
+     * 
+     * @param text
+     *            Words to look for; the last may be incomplete
+     * @return The uri to query
+     */
+    public static Uri searchUri(String text) {
+        // encoded as one segment, so a '/' or '?' typed stays in the text
+        return SEARCH_URI.buildUpon().appendPath(text).build();
+    }
+
+    /**
+     * @return true if an update only sets the read flag
+     */
+    private static boolean isReadOnly(ContentValues values) {
+        return values.size() == 1
+                && values.containsKey(TutListDatabase.COL_READ);
+    }
+
+    /**
+     * @return true if values set the read flag, rather than clear it
+     */
+    private static boolean isRead(ContentValues values) {
+        Integer read = values.getAsInteger(TutListDatabase.COL_READ);
+        return read != null && read.intValue() != 0;
+    }
+
+    /**
+     * @return A where clause on TABLE_TUTORIALS for the rows a selection
+     *         on VIEW_TUTORIALS matches
+     */
+    private static String inView(String selection) {
+        if (TextUtils.isEmpty(selection)) {
+            return selection;
+        }
+        return TutListDatabase.ID + " IN (SELECT " + TutListDatabase.ID
+                + " FROM " + TutListDatabase.VIEW_TUTORIALS + " WHERE "
+                + selection + ")";
+    }
+
+    /**
+     * @return A where clause for an item uri's row, ANDed with a selection
+     */
+    private static String whereId(String selection) {
+        if (TextUtils.isEmpty(selection)) {
+            return WHERE_ID;
+        }
+        return WHERE_ID + " AND (" + selection + ")";
+    }
+
+    /**
+     * @return The arguments for a where clause starting with WHERE_ID
+     */
+    private static String[] withIdArg(Uri uri, String[] selectionArgs) {
+        int count = selectionArgs == null ? 0 : selectionArgs.length;
+        String[] args = new String[count + 1];
+        args[0] = String.valueOf(Long.parseLong(uri.getLastPathSegment()));
+        if (count > 0) {
+            System.arraycopy(selectionArgs, 0, args, 1, count);
+        }
+        return args;
+    }
+
+    private static boolean isRowProjection(String[] projection) {
+        if (projection == null) {
+            return true;
+        }
+        for (String column : projection) {
+            if (columnIndex(column) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int columnIndex(String column) {
+        for (int i = 0; i < ROW_COLUMNS.length; i++) {
+            if (ROW_COLUMNS[i].equals(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Answers a query from the hot-row cache, reading and caching the value
+     * first on a miss
+     * 
+     * @param key
+     *            A row id as a Long, or one of the TutListCache aggregate
+     *            names
+     */
+    private Cursor queryCached(Uri uri, Object key, String[] projection) {
+        Object[] value = getCached(key);
+
+        MatrixCursor cursor;
+        if (TutListCache.UNREAD_COUNT.equals(key)) {
+            cursor = new MatrixCursor(projection, 1);
+            cursor.addRow(value);
+        } else {
+            String[] columns = projection == null ? ROW_COLUMNS : projection;
+            cursor = new MatrixCursor(columns, 1);
+            if (value != null) {
+                Object[] row = new Object[columns.length];
+                for (int i = 0; i < columns.length; i++) {
+                    row[i] = value[columnIndex(columns[i])];
+                }
+                cursor.addRow(row);
+            }
+        }
+        cursor.setNotificationUri(getContext().getContentResolver(), uri);
+        return cursor;
+    }
+
+    /**
+     * @return The cached value for a key, loaded into the cache first if
+     *         needed; null if there is no such row
+     */
+    private Object[] getCached(Object key) {
+        Object[] value = mCache.get(key);
+        if (value == null) {
+            long stamp = mCache.getStamp();
+            value = loadCached(key);
+            if (value != null) {
+                mCache.put(key, value, stamp);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @return The value for a cache key read from the database, or null if
+     *         there is no such row
+     */
+    private Object[] loadCached(Object key) {
+        if (TutListCache.UNREAD_COUNT.equals(key)) {
+            return new Object[] { mStatements.countUnread() };
+        }
+        Cursor cursor;
+        if (TutListCache.LATEST.equals(key)) {
+            cursor = mStatements.queryLatestRow();
+        } else {
+            cursor = mStatements.queryRowById((Long) key);
+        }
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            return new Object[] { cursor.getLong(0), cursor.getString(1),
+                    cursor.getString(2), cursor.getLong(3), cursor.getLong(4) };
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void notifyChange(Uri uri) {
+        if (Boolean.TRUE.equals(mApplyingBatch.get())) {
+            mBatchChanged.set(Boolean.TRUE);
+        } else {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+    }
+
+    /**
+     * @return The where clause for the rows after the (tut_date, _id) key,
+     *         in PAGE_SORT_ORDER. Written so the tut_date index bounds the
+     *         scan.
+     */
+    static String keysetWhere(String before) {
+        int comma = before.indexOf(',');
+        if (comma < 0) {
+            throw new IllegalArgumentException("Invalid page key " + before);
+        }
+        // parsed, so safe to inline
+        long date = Long.parseLong(before.substring(0, comma));
+        long id = Long.parseLong(before.substring(comma + 1));
+        return TutListDatabase.COL_DATE + "<=" + date + " AND ("
+                + TutListDatabase.COL_DATE + "<" + date + " OR "
+                + TutListDatabase.ID + "<" + id + ")";
+    }
+
+    /**
+     * Builds the uri of a page of tutorials, newest first
+     * 
+     * @param limit
+     *            The page size
+     * @param beforeDate
+     *            tut_date of the last row of the previous page
+     * @param beforeId
+     *            _id of the last row of the previous page
+     */
+    public static Uri pageUri(int limit, long beforeDate, long beforeId) {
+        return CONTENT_URI.buildUpon()
+                .appendQueryParameter(QUERY_LIMIT, String.valueOf(limit))
+                .appendQueryParameter(QUERY_BEFORE, beforeDate + "," + beforeId)
+                .build();
+    }
+
+    /**
+     * Builds the uri of the first page of tutorials, newest first
+     */
+    public static Uri pageUri(int limit) {
+        return CONTENT_URI.buildUpon()
+                .appendQueryParameter(QUERY_LIMIT, String.valueOf(limit))
+                .build();
+    }
+
+    private static boolean isReplace(Uri uri) {
+        return CONFLICT_REPLACE.equals(uri.getQueryParameter(QUERY_CONFLICT));
+    }
+
+    /**
+     * Updates the stored row with the same url as values, if any column
+     * differs. Null values are left out: the columns are NOT NULL, so they
+     * keep what is stored, as in bulkInsert().
+     * 
+     * @return The number of rows changed
+     */
+    private static int updateByUrl(SQLiteDatabase sqlDB, ContentValues values) {
+        ContentValues changed = new ContentValues(values);
+        String url = changed.getAsString(TutListDatabase.COL_URL);
+        changed.remove(TutListDatabase.COL_URL);
+        for (Map.Entry<String, Object> column : values.valueSet()) {
+            if (column.getValue() == null) {
+                changed.remove(column.getKey());
+            }
+        }
+        if (changed.size() == 0) {
+            return 0;
+        }
+        StringBuilder where = new StringBuilder(TutListDatabase.COL_URL
+                + "=? AND (");
+        ArrayList<String> whereArgs = new ArrayList<String>();
+        whereArgs.add(url);
+        boolean first = true;
+        for (Map.Entry<String, Object> column : changed.valueSet()) {
+            if (!first) {
+                where.append(" OR ");
+            }
+            first = false;
+            // no "IS NOT ?" before SQLite 3.6.19 (API 8)
+            where.append("(").append(column.getKey()).append(" <> ? OR ")
+                    .append(column.getKey()).append(" IS NULL)");
+            whereArgs.add(column.getValue().toString());
+        }
+        where.append(")");
+        return sqlDB.update(TutListDatabase.TABLE_TUTORIALS, changed,
+                where.toString(),
+                whereArgs.toArray(new String[whereArgs.size()]));
+    }
+
+    /**
+     * Inserts one row with a compiled INSERT OR IGNORE, since
+     * insertWithOnConflict() needs API 8
+     * 
+     * @return The new row's id, or -1 if the row was ignored
+     */
+    private static long insertOrIgnore(SQLiteDatabase sqlDB, String table,
+            ContentValues values) {
+        if (values.size() == 0) {
+            // every table here has a NOT NULL column to fill
+            return -1;
+        }
+        StringBuilder sql = new StringBuilder("INSERT OR IGNORE INTO ")
+                .append(table).append(" (");
+        StringBuilder params = new StringBuilder();
+        Object[] args = new Object[values.size()];
+        int i = 0;
+        for (Map.Entry<String, Object> column : values.valueSet()) {
+            if (i > 0) {
+                sql.append(", ");
+                params.append(", ");
+            }
+            sql.append(column.getKey());
+            params.append('?');
+            args[i++] = column.getValue();
+        }
+        sql.append(") VALUES (").append(params).append(')');
+
+        SQLiteStatement insert = null;
+        SQLiteStatement changes = null;
+        // changes() has to see this insert, not another thread's
+        sqlDB.beginTransaction();
+        try {
+            insert = sqlDB.compileStatement(sql.toString());
+            for (i = 0; i < args.length; i++) {
+                DatabaseUtils.bindObjectToProgram(insert, i + 1, args[i]);
+            }
+            if (!INSERT_REPORTS_IGNORED) {
+                changes = sqlDB.compileStatement(SELECT_CHANGES);
+            }
+            long id = executeInsert(insert, changes);
+            sqlDB.setTransactionSuccessful();
+            return id;
+        } finally {
+            closeStatements(insert, changes);
+            sqlDB.endTransaction();
+        }
+    }
+
+    /**
+     * Runs a bound INSERT OR IGNORE
+     * 
+     * @param changes
+     *            SELECT_CHANGES on the same connection; only needed, and
+     *            only used, before API 8
+     * @return The new row's id, or -1 if the row was ignored
+     */
+    private static long executeInsert(SQLiteStatement insert,
+            SQLiteStatement changes) {
+        long id = insert.executeInsert();
+        if (!INSERT_REPORTS_IGNORED && changes.simpleQueryForLong() == 0) {
+            return -1;
+        }
+        return id;
+    }
+
+    private static void closeStatements(SQLiteStatement... statements) {
+        for (SQLiteStatement statement : statements) {
+            if (statement != null) {
+                statement.close();
+            }
+        }
+    }
+
+    private static void bindTutorial(SQLiteStatement insert,
+            ContentValues values) {
+        bindStringOrNull(insert, 1,
+                values.getAsString(TutListDatabase.COL_TITLE));
+        bindStringOrNull(insert, 2, values.getAsString(TutListDatabase.COL_URL));
+        Long date = values.getAsLong(TutListDatabase.COL_DATE);
+        if (date == null) {
+            insert.bindNull(3);
+        } else {
+            insert.bindLong(3, date);
+        }
+    }
+
+    private static void bindStringOrNull(SQLiteStatement statement, int index,
+            String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * Reads the tutorial counts
+     * 
+     * @param context
+     *            A valid context
+     * @return The counts, or null if they couldn't be read
+     */
+    public static Stats getStats(Context context) {
+        if (hasCall()) {
+            Bundle result = call(context, METHOD_STATS, null);
+            if (result == null
+                    || !result.containsKey(TutListDatabase.COL_TOTAL)) {
+                return null;
+            }
+            return new Stats((int) result.getLong(TutListDatabase.COL_TOTAL),
+                    (int) result.getLong(TutListDatabase.COL_UNREAD),
+                    result.getLong(TutListDatabase.COL_INSERTED));
+        }
+        String[] projection = { TutListDatabase.COL_TOTAL,
+                TutListDatabase.COL_UNREAD, TutListDatabase.COL_INSERTED };
+        Cursor cursor = context.getContentResolver().query(STATS_URI,
+                projection, null, null, null);
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            return new Stats(cursor.getInt(0), cursor.getInt(1),
+                    cursor.getLong(2));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @param context
+     *            A valid context
+     * @return The title of the newest tutorial, or null if there is none
+     */
+    public static String getLatestTitle(Context context) {
+        if (hasCall()) {
+            Bundle result = call(context, METHOD_LATEST_TITLE, null);
+            return result == null ? null : result.getString(CALL_RESULT);
+        }
+        return queryString(context, LATEST_URI, TutListDatabase.COL_TITLE);
+    }
+
+    /**
+     * @param context
+     *            A valid context
+     * @return The number of unread tutorials
+     */
+    public static long getUnreadCount(Context context) {
+        if (hasCall()) {
+            Bundle result = call(context, METHOD_UNREAD_COUNT, null);
+            return result == null ? 0 : result.getLong(CALL_RESULT);
+        }
+        String count = queryString(context, UNREAD_COUNT_URI, COL_COUNT);
+        return count == null ? 0 : Long.parseLong(count);
+    }
+
+    /**
+     * @param context
+     *            A valid context
+     * @param item
+     *            A tutorial's id
+     * @return The tutorial's url, or null if there is no such tutorial
+     */
+    public static String getUrl(Context context, long item) {
+        if (hasCall()) {
+            Bundle result = call(context, METHOD_URL_BY_ID,
+                    String.valueOf(item));
+            return result == null ? null : result.getString(CALL_RESULT);
+        }
+        return queryString(context,
+                ContentUris.withAppendedId(CONTENT_URI, item),
+                TutListDatabase.COL_URL);
+    }
+
+    /**
+     * @param context
+     *            A valid context
+     * @return When every feed was last refreshed (milliseconds), or 0 if
+     *         never
+     */
+    public static long getLastSyncTime(Context context) {
+        if (hasCall()) {
+            Bundle result = call(context, METHOD_LAST_SYNC, null);
+            return result == null ? 0 : result.getLong(CALL_RESULT);
+        }
+        return TutListSharedPrefs.getLastSyncTime(context);
+    }
+
+    /**
+     * Inserts tutorials in one transaction, as bulkInsert() does, and counts
+     * the rows inserted, updated and ignored
+     * 
+     * @param context
+     *            A valid context
+     * @param values
+     *            The rows
+     * @param replace
+     *            Whether a row whose url is already stored is updated in
+     *            place (CONFLICT_REPLACE) rather than ignored
+     * @return The counts; below API 11 a replace can't tell inserted rows
+     *         from updated ones, so inserted has both and updated is -1
+     */
+    public static InsertCounts insertTutorials(Context context,
+            ContentValues[] values, boolean replace) {
+        String conflict = replace ? CONFLICT_REPLACE : CONFLICT_IGNORE;
+        if (hasCall()) {
+            Bundle extras = new Bundle();
+            extras.putParcelableArray(CALL_VALUES, values);
+            Bundle result = context.getContentResolver().call(CONTENT_URI,
+                    METHOD_INSERT_TUTORIALS, conflict, extras);
+            return new InsertCounts(result.getInt(CALL_INSERTED),
+                    result.getInt(CALL_UPDATED), result.getInt(CALL_IGNORED));
+        }
+        Uri uri = CONTENT_URI.buildUpon()
+                .appendQueryParameter(QUERY_CONFLICT, conflict).build();
+        int changed = context.getContentResolver().bulkInsert(uri, values);
+        return new InsertCounts(changed, replace ? -1 : 0, values.length
+                - changed);
+    }
+
+    private static boolean hasCall() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB;
+    }
+
+    private static Bundle call(Context context, String method, String arg) {
+        return context.getContentResolver().call(CONTENT_URI, method, arg,
+                null);
+    }
+
+    /**
+     * The query() path for the helpers below API 11
+     * 
+     * @return A column of the first row of a uri, or null if there is none
+     */
+    private static String queryString(Context context, Uri uri, String column) {
+        Cursor cursor = context.getContentResolver().query(uri,
+                new String[] { column }, null, null, null);
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * The row of STATS_URI
+     */
+    public static class Stats {
+        public final int total;
+        public final int unread;
+        // every tutorial ever inserted; subtract an earlier reading for the
+        // number of new ones since
+        public final long inserted;
+
+        Stats(int total, int unread, long inserted) {
+            this.total = total;
+            this.unread = unread;
+            this.inserted = inserted;
+        }
+    }
+
+    /**
+     * What insertTutorials() did with each row
+     */
+    public static class InsertCounts {
+        public final int inserted;
+        // stored rows that differed, with CONFLICT_REPLACE
+        public final int updated;
+        // duplicates, or with CONFLICT_REPLACE stored rows that didn't differ
+        public final int ignored;
+
+        InsertCounts(int inserted, int updated, int ignored) {
+            this.inserted = inserted;
+            this.updated = updated;
+            this.ignored = ignored;
+        }
+    }
+
     /**
      * Helper to mark all items (tutorials) in the table as read
      * 
@@ -209,7 +1298,7 @@ public class TutListProvider extends ContentProvider {
         ContentValues values = new ContentValues();
         values.put(TutListDatabase.COL_READ, "1");
         int updated = context.getContentResolver().update(CONTENT_URI, values,
-                TutListDatabase.COL_READ + "='0'", null);
+                null, null);
         Log.d(DEBUG_TAG, "Rows updated: " + updated);
     }
 
@@ -30,6 +30,9 @@
  */
 package com.mamlambo.tutorial.tutlist.data;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.mamlambo.tutorial.tutlist.R;
 
 import android.content.Context;
@@ -39,6 +42,30 @@ import android.content.SharedPreferences.Editor;
 public class TutListSharedPrefs {
     public final static String PREFS_NAME = "tutlist_prefs";
 
+    // per-feed HTTP cache validators, keyed by feed url
+    private final static String KEY_FEED_ETAG = "feed_etag:";
+    private final static String KEY_FEED_LAST_MODIFIED = "feed_last_modified:";
+    private final static String KEY_FEED_HIGH_WATER = "feed_high_water:";
+
+    // per-feed retry state after transient failures, keyed by feed url
+    private final static String KEY_RETRY_ATTEMPTS = "retry_attempts:";
+    private final static String KEY_RETRY_AT = "retry_at:";
+
+    // outcome of the last compaction run
+    private final static String KEY_COMPACTION_TIME = "compaction_time";
+    private final static String KEY_COMPACTION_ROWS = "compaction_rows";
+    private final static String KEY_COMPACTION_BYTES = "compaction_bytes";
+
+    // when a refresh run last stored every feed
+    private final static String KEY_LAST_SYNC = "last_sync";
+
+    // when background refreshes found new items, oldest first, as a comma
+    // separated list of milliseconds
+    private final static String KEY_REFRESH_ARRIVALS = "refresh_arrivals";
+
+    // the inserted count last shown in a notification
+    private final static String KEY_SEEN_INSERTED = "seen_inserted";
+
     public static boolean getBackgroundUpdateFlag(Context context) {
         SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, 0);
         return prefs.getBoolean(
@@ -61,4 +88,189 @@ public static boolean getOnlyUnreadFlag(Context context) {
             context.getString(R.string.pref_key_only_unread),
             false);
 }
+
+    public static String getFeedETag(Context context, String feedUrl) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, 0);
+        return prefs.getString(KEY_FEED_ETAG + feedUrl, null);
+    }
+
+    public static String getFeedLastModified(Context context, String feedUrl) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, 0);
+        return prefs.getString(KEY_FEED_LAST_MODIFIED + feedUrl, null);
+    }
+
+    /**
+     * Stores the ETag and Last-Modified values of the last successfully
+     * processed copy of a feed; null values are removed
+     */
+    public static void setFeedValidators(Context context, String feedUrl,
+            String eTag, String lastModified) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, 0);
+        Editor prefsEditor = prefs.edit();
+        if (eTag != null) {
+            prefsEditor.putString(KEY_FEED_ETAG + feedUrl, eTag);
+        } else {
+            prefsEditor.remove(KEY_FEED_ETAG + feedUrl);
+        }
+        if (lastModified != null) {
+            prefsEditor.putString(KEY_FEED_LAST_MODIFIED + feedUrl,
+                    lastModified);
+        } else {
+            prefsEditor.remove(KEY_FEED_LAST_MODIFIED + feedUrl);
+        }
+        prefsEditor.commit();
+    }
+
+    /**
+     * @return The newest tut_date (seconds) ingested from the feed, or 0
+     */
+    public static long getFeedHighWaterMark(Context context, String feedUrl) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, 0);
+        return prefs.getLong(KEY_FEED_HIGH_WATER + feedUrl, 0);
+    }
+
+    public static void setFeedHighWaterMark(Context context, String feedUrl,
+            long newValue) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, 0);
+        Editor prefsEditor = prefs.edit();
+        prefsEditor.putLong(KEY_FEED_HIGH_WATER + feedUrl, newValue);
+        prefsEditor.commit();
+    }
+
+    /**
+     * @return The number of retries in a row so far for the feed, or 0
+     */
+    public static int getRetryAttempts(Context context, String feedUrl) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, 0);
+        return prefs.getInt(KEY_RETRY_ATTEMPTS + feedUrl, 0);
+    }
+
+    /**
+     * @return When the feed's next retry is due (milliseconds), or 0
+     */
+    public static long getRetryTime(Context context, String feedUrl) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, 0);
+        return prefs.getLong(KEY_RETRY_AT + feedUrl, 0);
+    }
+
+    public static void setRetryState(Context context, String feedUrl,
+            int attempts, long retryAt) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, 0);
+        Editor prefsEditor = prefs.edit();
+        prefsEditor.putInt(KEY_RETRY_ATTEMPTS + feedUrl, attempts);
+        prefsEditor.putLong(KEY_RETRY_AT + feedUrl, retryAt);
+        prefsEditor.commit();
+    }
+
+    public static void clearRetryState(Context context, String feedUrl) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, 0);
+        Editor prefsEditor = prefs.edit();
+        prefsEditor.remove(KEY_RETRY_ATTEMPTS + feedUrl);
+        prefsEditor.remove(KEY_RETRY_AT + feedUrl);
+        prefsEditor.commit();
+    }
+
+    /**
+     * @return The urls of the feeds with a retry pending
+     */
+    public static List<String> getRetryFeeds(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, 0);
+        ArrayList<String> feeds = new ArrayList<String>();
+        for (String key : prefs.getAll().keySet()) {
+            if (key.startsWith(KEY_RETRY_ATTEMPTS)) {
+                feeds.add(key.substring(KEY_RETRY_ATTEMPTS.length()));
+            }
+        }
+        return feeds;
+    }
+
+    /**
+     * Records what the last compaction run reclaimed, with the current time
+     */
+    public static void setLastCompaction(Context context, int rowsDeleted,
+            long bytesReclaimed) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, 0);
+        Editor prefsEditor = prefs.edit();
+        prefsEditor.putLong(KEY_COMPACTION_TIME, System.currentTimeMillis());
+        prefsEditor.putInt(KEY_COMPACTION_ROWS, rowsDeleted);
+        prefsEditor.putLong(KEY_COMPACTION_BYTES, bytesReclaimed);
+        prefsEditor.commit();
+    }
+
+    public static int getLastCompactionRows(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, 0);
+        return prefs.getInt(KEY_COMPACTION_ROWS, 0);
+    }
+
+    public static long getLastCompactionBytes(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, 0);
+        return prefs.getLong(KEY_COMPACTION_BYTES, 0);
+    }
+
+    /**
+     * @return When every feed was last refreshed (milliseconds), or 0 if
+     *         never
+     */
+    public static long getLastSyncTime(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, 0);
+        return prefs.getLong(KEY_LAST_SYNC, 0);
+    }
+
+    public static void setLastSyncTime(Context context, long newValue) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, 0);
+        Editor prefsEditor = prefs.edit();
+        prefsEditor.putLong(KEY_LAST_SYNC, newValue);
+        prefsEditor.commit();
+    }
+
+    public static long[] getRefreshArrivals(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, 0);
+        String arrivals = prefs.getString(KEY_REFRESH_ARRIVALS, "");
+        if (arrivals.length() == 0) {
+            return new long[0];
+        }
+        String[] times = arrivals.split(",");
+        long[] values = new long[times.length];
+        for (int i = 0; i < times.length; i++) {
+            values[i] = Long.parseLong(times[i]);
+        }
+        return values;
+    }
+
+    public static void setRefreshArrivals(Context context, long[] newValue) {
+        StringBuilder arrivals = new StringBuilder();
+        for (long time : newValue) {
+            if (arrivals.length() > 0) {
+                arrivals.append(',');
+            }
+            arrivals.append(time);
+        }
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, 0);
+        Editor prefsEditor = prefs.edit();
+        prefsEditor.putString(KEY_REFRESH_ARRIVALS, arrivals.toString());
+        prefsEditor.commit();
+    }
+
+    /**
+     * @return The inserted count last shown to the user, or -1 if never
+     */
+    public static long getSeenInsertedCount(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, 0);
+        return prefs.getLong(KEY_SEEN_INSERTED, -1);
+    }
+
+    public static void setSeenInsertedCount(Context context, long newValue) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, 0);
+        Editor prefsEditor = prefs.edit();
+        prefsEditor.putLong(KEY_SEEN_INSERTED, newValue);
+        prefsEditor.commit();
+    }
+
+    /**
+     * @return When compaction last ran (milliseconds), or 0 if never
+     */
+    public static long getLastCompactionTime(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, 0);
+        return prefs.getLong(KEY_COMPACTION_TIME, 0);
+    }
 }
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * The provider's fixed queries, each with one constant SQL text and bound
+ * arguments. Single value queries and the read state writes are compiled
+ * once and re-bound on every call; row queries go through rawQuery(),
+ * where the constant text lets the connection's statement cache reuse the
+ * compiled statement instead of preparing a new one for every id.
+ * 
+ * Read state is a watermark plus exceptions (see TutListDatabase), so
+ * marking one tutorial adds or removes an exception and marking all only
+ * moves the watermark.
+ */
+class TutListStatements {
+
+    // the columns of a row query, in this order
+    static final String[] ROW_COLUMNS = { TutListDatabase.ID,
+            TutListDatabase.COL_TITLE, TutListDatabase.COL_URL,
+            TutListDatabase.COL_DATE, TutListDatabase.COL_READ };
+
+    private static final String WATERMARK = "(SELECT "
+            + TutListDatabase.COL_WATERMARK + " FROM "
+            + TutListDatabase.TABLE_WATERMARK + ")";
+
+    private static final String SELECT_ROW = "SELECT " + TutListDatabase.ID
+            + ", " + TutListDatabase.COL_TITLE + ", "
+            + TutListDatabase.COL_URL + ", " + TutListDatabase.COL_DATE + ", "
+            + TutListDatabase.COL_READ + " FROM "
+            + TutListDatabase.VIEW_TUTORIALS;
+    static final String SELECT_ROW_BY_ID = SELECT_ROW + " WHERE "
+            + TutListDatabase.ID + "=?";
+    static final String SELECT_LATEST_ROW = SELECT_ROW + " ORDER BY "
+            + TutListProvider.PAGE_SORT_ORDER + " LIMIT 1";
+    // kept up to date by triggers, so a single row read
+    private static final String COUNT_UNREAD = "SELECT "
+            + TutListDatabase.COL_UNREAD + " FROM "
+            + TutListDatabase.TABLE_COUNTS;
+    private static final String SELECT_COUNTS = "SELECT "
+            + TutListDatabase.COL_TOTAL + ", " + TutListDatabase.COL_UNREAD
+            + ", " + TutListDatabase.COL_INSERTED + " FROM "
+            + TutListDatabase.TABLE_COUNTS;
+    // a row's read state, and its state by the watermark alone
+    private static final String SELECT_READ_STATE = "SELECT "
+            + TutListDatabase.COL_READ + ", " + TutListDatabase.ID + " <= "
+            + WATERMARK + " FROM " + TutListDatabase.VIEW_TUTORIALS
+            + " WHERE " + TutListDatabase.ID + "=?";
+    private static final String INSERT_EXCEPTION = "INSERT INTO "
+            + TutListDatabase.TABLE_READ_EXCEPTIONS + " ("
+            + TutListDatabase.COL_TUT_ID + ", " + TutListDatabase.COL_READ
+            + ") VALUES (?, ?)";
+    private static final String DELETE_EXCEPTION = "DELETE FROM "
+            + TutListDatabase.TABLE_READ_EXCEPTIONS + " WHERE "
+            + TutListDatabase.COL_TUT_ID + "=?";
+    private static final String MOVE_WATERMARK = "UPDATE "
+            + TutListDatabase.TABLE_WATERMARK + " SET "
+            + TutListDatabase.COL_WATERMARK + " = (SELECT coalesce(max("
+            + TutListDatabase.ID + "), 0) FROM "
+            + TutListDatabase.TABLE_TUTORIALS + ")";
+    private static final String DELETE_EXCEPTIONS = "DELETE FROM "
+            + TutListDatabase.TABLE_READ_EXCEPTIONS;
+
+    private final TutListDatabase mDB;
+    // compiled on first use; a statement can't be bound by two threads at
+    // once, so the count is used while holding its own lock and the read
+    // state writes only inside a write transaction, which is exclusive
+    // (and may already be open in the provider, so no lock of ours is held
+    // while waiting for it)
+    private SQLiteStatement mCountUnread;
+    private SQLiteStatement mInsertException;
+    private SQLiteStatement mDeleteException;
+    private SQLiteStatement mMoveWatermark;
+    private SQLiteStatement mDeleteExceptions;
+
+    TutListStatements(TutListDatabase db) {
+        mDB = db;
+    }
+
+    /**
+     * @return The row with the ROW_COLUMNS of a tutorial; empty if there
+     *         is none
+     */
+    Cursor queryRowById(long id) {
+        return mDB.getReadableDatabase().rawQuery(SELECT_ROW_BY_ID,
+                new String[] { String.valueOf(id) });
+    }
+
+    /**
+     * @return The row with the ROW_COLUMNS of the newest tutorial; empty if
+     *         there is none
+     */
+    Cursor queryLatestRow() {
+        return mDB.getReadableDatabase().rawQuery(SELECT_LATEST_ROW, null);
+    }
+
+    long countUnread() {
+        synchronized (this) {
+            if (mCountUnread == null) {
+                mCountUnread = mDB.getWritableDatabase().compileStatement(
+                        COUNT_UNREAD);
+            }
+        }
+        synchronized (mCountUnread) {
+            return mCountUnread.simpleQueryForLong();
+        }
+    }
+
+    /**
+     * @return The total, unread and inserted counts, or null if there is
+     *         no counts row
+     */
+    long[] readCounts() {
+        Cursor cursor = mDB.getReadableDatabase().rawQuery(SELECT_COUNTS,
+                null);
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            return new long[] { cursor.getLong(0), cursor.getLong(1),
+                    cursor.getLong(2) };
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Marks a tutorial read or unread
+     * 
+     * @return 1 if its state changed, else 0
+     */
+    int setRead(long id, boolean read) {
+        SQLiteDatabase db = mDB.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            if (mInsertException == null) {
+                mInsertException = db.compileStatement(INSERT_EXCEPTION);
+                mDeleteException = db.compileStatement(DELETE_EXCEPTION);
+            }
+            // queried in the transaction, so on the write connection
+            Cursor state = db.rawQuery(SELECT_READ_STATE,
+                    new String[] { String.valueOf(id) });
+            boolean current;
+            boolean byWatermark;
+            try {
+                if (!state.moveToFirst()) {
+                    return 0;
+                }
+                current = state.getInt(0) != 0;
+                byWatermark = state.getInt(1) != 0;
+            } finally {
+                state.close();
+            }
+            if (current == read) {
+                return 0;
+            }
+            if (read == byWatermark) {
+                mDeleteException.bindLong(1, id);
+                mDeleteException.execute();
+            } else {
+                mInsertException.bindLong(1, id);
+                mInsertException.bindLong(2, read ? 1 : 0);
+                mInsertException.execute();
+            }
+            db.setTransactionSuccessful();
+            return 1;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Marks every tutorial read by moving the watermark to the newest one
+     * 
+     * @return The number of tutorials that were unread
+     */
+    int markAllRead() {
+        SQLiteDatabase db = mDB.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            if (mMoveWatermark == null) {
+                mMoveWatermark = db.compileStatement(MOVE_WATERMARK);
+                mDeleteExceptions = db.compileStatement(DELETE_EXCEPTIONS);
+            }
+            int unread = (int) DatabaseUtils.longForQuery(db, COUNT_UNREAD,
+                    null);
+            if (unread > 0) {
+                mMoveWatermark.execute();
+                mDeleteExceptions.execute();
+            }
+            db.setTransactionSuccessful();
+            return unread;
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
@@ -30,30 +30,44 @@
  */
 package com.mamlambo.tutorial.tutlist.receiver;
 
-import java.util.Calendar;
-import java.util.TimeZone;
+import java.util.Random;
 
 import android.app.AlarmManager;
 import android.app.PendingIntent;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.res.Resources;
 import android.net.Uri;
 import android.util.Log;
 
 import com.mamlambo.tutorial.tutlist.R;
+import com.mamlambo.tutorial.tutlist.data.TutListSharedPrefs;
+import com.mamlambo.tutorial.tutlist.service.FeedRetryQueue;
 import com.mamlambo.tutorial.tutlist.service.TutListDownloaderService;
 
 public class AlarmReceiver extends BroadcastReceiver {
 
     private static final String DEBUG_TAG = "AlarmReceiver";
+    private static final long MINUTE = 60 * 1000;
 
     @Override
     public void onReceive(Context context, Intent intent) {
-        Log.d(DEBUG_TAG, "Recurring alarm; requesting download service.");
-        // start the download
         Intent downloader = new Intent(context, TutListDownloaderService.class);
-        downloader.setData(Uri.parse(context.getString(R.string.default_url)));
+        Uri feed = intent.getData();
+        if (feed != null) {
+            // a retry of one feed; the service takes it as its data
+            Log.d(DEBUG_TAG, "Retry alarm for " + feed);
+            downloader.setData(feed);
+            context.startService(downloader);
+            return;
+        }
+        Log.d(DEBUG_TAG, "Recurring alarm; requesting download service.");
+        // the finished run schedules the next alarm; this one stands in if
+        // the run never finishes
+        setAlarm(context, context.getResources().getInteger(
+                R.integer.refresh_max_minutes) * MINUTE);
+        // start the download of all subscribed feeds
         context.startService(downloader);
     }
 
@@ -69,30 +83,104 @@ public class AlarmReceiver extends BroadcastReceiver {
         AlarmManager alarms = (AlarmManager) context
                 .getSystemService(Context.ALARM_SERVICE);
         alarms.cancel(recurringDownload);
+        new FeedRetryQueue(context).reset();
     }
 
     /**
-     * Sets alarm, to be received by AlarmReceiver at a specific 
-     * time, daily.
+     * Sets alarm, to be received by AlarmReceiver after a delay picked
+     * from when new items have been showing up; each refresh run of every
+     * feed sets the next one through onRefreshRun()
      * 
-     * We know Mobiletuts+ updates at right around 1130 GMT.
-     * Let's grab new stuff at around 11:45 GMT, inexactly
      * @param context A valid context
      */
     public static void setRecurringAlarm(Context context) {
-        Calendar updateTime = Calendar.getInstance();
-        updateTime.setTimeZone(TimeZone.getTimeZone("GMT"));
-        updateTime.set(Calendar.HOUR_OF_DAY, 11);
-        updateTime.set(Calendar.MINUTE, 45);
+        setAlarm(context, newScheduler(context).nextDelay(
+                TutListSharedPrefs.getRefreshArrivals(context),
+                System.currentTimeMillis()));
+        new FeedRetryQueue(context).rearm();
+    }
 
+    /**
+     * Sets a one-off alarm that refreshes a single feed, replacing any
+     * pending retry of it
+     * 
+     * @param context A valid context
+     * @param feedUrl The feed to refresh
+     * @param delay Milliseconds from now
+     */
+    public static void setRetryAlarm(Context context, String feedUrl,
+            long delay) {
+        AlarmManager alarms = (AlarmManager) context
+                .getSystemService(Context.ALARM_SERVICE);
+        alarms.set(AlarmManager.RTC_WAKEUP, System.currentTimeMillis()
+                + delay, getRetryIntent(context, feedUrl));
+    }
+
+    /**
+     * Cancels a feed's pending retry, if any
+     * 
+     * @param context A valid context
+     * @param feedUrl The feed
+     */
+    public static void cancelRetryAlarm(Context context, String feedUrl) {
+        AlarmManager alarms = (AlarmManager) context
+                .getSystemService(Context.ALARM_SERVICE);
+        alarms.cancel(getRetryIntent(context, feedUrl));
+    }
+
+    /**
+     * @return The broadcast of a feed's retries; the url as data keeps it
+     *         apart from the recurring alarm and other feeds' retries
+     */
+    private static PendingIntent getRetryIntent(Context context,
+            String feedUrl) {
+        Intent retry = new Intent(context, AlarmReceiver.class);
+        retry.setData(Uri.parse(feedUrl));
+        return PendingIntent.getBroadcast(context, 0, retry,
+                PendingIntent.FLAG_CANCEL_CURRENT);
+    }
+
+    /**
+     * Records a finished refresh run of every feed and, if background
+     * updates are on, sets the alarm for the next one
+     * 
+     * @param context A valid context
+     * @param foundNew true if the run stored new items
+     */
+    public static void onRefreshRun(Context context, boolean foundNew) {
+        long now = System.currentTimeMillis();
+        RefreshScheduler scheduler = newScheduler(context);
+        long[] arrivals = scheduler.recordRun(
+                TutListSharedPrefs.getRefreshArrivals(context), now, foundNew);
+        if (foundNew) {
+            TutListSharedPrefs.setRefreshArrivals(context, arrivals);
+        }
+        if (TutListSharedPrefs.getBackgroundUpdateFlag(context)) {
+            setAlarm(context, scheduler.nextDelay(arrivals, now));
+        }
+    }
+
+    private static RefreshScheduler newScheduler(Context context) {
+        Resources res = context.getResources();
+        return new RefreshScheduler(res
+                .getInteger(R.integer.refresh_min_minutes) * MINUTE, res
+                .getInteger(R.integer.refresh_max_minutes) * MINUTE, res
+                .getInteger(R.integer.refresh_jitter_minutes) * MINUTE, res
+                .getInteger(R.integer.refresh_history), new Random());
+    }
+
+    /**
+     * Replaces any pending alarm with one a delay from now
+     */
+    private static void setAlarm(Context context, long delay) {
+        Log.d(DEBUG_TAG, "Next refresh in " + delay / MINUTE + " minutes");
         Intent downloader = new Intent(context, AlarmReceiver.class);
         PendingIntent recurringDownload = PendingIntent.getBroadcast(context,
                 0, downloader, PendingIntent.FLAG_CANCEL_CURRENT);
         AlarmManager alarms = (AlarmManager) context
                 .getSystemService(Context.ALARM_SERVICE);
-        alarms.setInexactRepeating(AlarmManager.RTC_WAKEUP,
-                updateTime.getTimeInMillis(), AlarmManager.INTERVAL_DAY,
-                recurringDownload);
+        alarms.set(AlarmManager.RTC_WAKEUP, System.currentTimeMillis()
+                + delay, recurringDownload);
     }
 
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.receiver;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Picks the delay until the next background refresh from when new items
+ * actually showed up. The gaps between recent arrivals give a window in
+ * which the next one is likely: between their first and third quartile
+ * after the last arrival. Until the window opens nothing is polled; inside
+ * it refreshes are a quarter of its width apart, so new content waits
+ * only a fraction of the window. Past the window the feed is overdue and
+ * the delay grows with the time since the window closed, so an idle feed
+ * is polled less and less. Delays are jittered and kept between a minimum
+ * and a maximum.
+ * 
+ * Plain Java, so it can be driven by a made-up publish history.
+ */
+public class RefreshScheduler {
+
+    // refreshes per window, and per time since it closed once overdue
+    static final int POLLS_PER_WINDOW = 4;
+
+    private final long minDelay;
+    private final long maxDelay;
+    private final long jitter;
+    private final int historySize;
+    private final Random random;
+
+    /**
+     * @param minDelay
+     *            The shortest delay (milliseconds)
+     * @param maxDelay
+     *            The longest delay (milliseconds); until there are two
+     *            arrivals to estimate from, a quarter of it is used
+     * @param jitter
+     *            Up to how much a delay is moved either way (milliseconds)
+     * @param historySize
+     *            The number of arrivals kept
+     * @param random
+     *            Source of the jitter
+     */
+    public RefreshScheduler(long minDelay, long maxDelay, long jitter,
+            int historySize, Random random) {
+        this.minDelay = minDelay;
+        this.maxDelay = maxDelay;
+        this.jitter = jitter;
+        this.historySize = historySize;
+        this.random = random;
+    }
+
+    /**
+     * Records the outcome of a refresh run
+     * 
+     * @param arrivals
+     *            Earlier arrival times (milliseconds), oldest first
+     * @param now
+     *            When the run finished
+     * @param foundNew
+     *            true if the run stored new items
+     * @return The arrival times to keep, oldest first
+     */
+    public long[] recordRun(long[] arrivals, long now, boolean foundNew) {
+        if (!foundNew) {
+            return arrivals;
+        }
+        int keep = Math.min(arrivals.length, historySize - 1);
+        long[] recorded = new long[keep + 1];
+        System.arraycopy(arrivals, arrivals.length - keep, recorded, 0, keep);
+        recorded[keep] = now;
+        return recorded;
+    }
+
+    /**
+     * @param arrivals
+     *            Arrival times (milliseconds), oldest first
+     * @param now
+     *            The current time
+     * @return The delay until the next refresh (milliseconds)
+     */
+    public long nextDelay(long[] arrivals, long now) {
+        long delay;
+        if (arrivals.length < 2) {
+            delay = maxDelay / POLLS_PER_WINDOW;
+        } else {
+            long[] gaps = new long[arrivals.length - 1];
+            for (int i = 0; i < gaps.length; i++) {
+                gaps[i] = arrivals[i + 1] - arrivals[i];
+            }
+            Arrays.sort(gaps);
+            long opens = gaps[(gaps.length - 1) / 4];
+            long closes = gaps[gaps.length * 3 / 4];
+            long sinceLast = now - arrivals[arrivals.length - 1];
+            if (sinceLast < opens) {
+                delay = opens - sinceLast;
+            } else if (sinceLast < closes) {
+                delay = (closes - opens) / POLLS_PER_WINDOW;
+            } else {
+                delay = Math.max(closes - opens, sinceLast - closes)
+                        / POLLS_PER_WINDOW;
+            }
+        }
+        delay += (long) (jitter * (2 * random.nextDouble() - 1));
+        return Math.max(minDelay, Math.min(maxDelay, delay));
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import com.mamlambo.tutorial.tutlist.R;
+import com.mamlambo.tutorial.tutlist.data.ArticleCache;
+import com.mamlambo.tutorial.tutlist.data.TutListDatabase;
+import com.mamlambo.tutorial.tutlist.data.TutListProvider;
+
+/**
+ * Downloads the newest unread articles into the ArticleCache, so opening
+ * one doesn't wait for the network. Runs after each refresh, on the
+ * refresh thread.
+ */
+public class ArticlePrefetcher {
+
+    private static final String DEBUG_TAG = "ArticlePrefetcher";
+
+    private static final int CONNECT_TIMEOUT = 15000;
+    private static final int READ_TIMEOUT = 30000;
+    private static final String DEFAULT_CHARSET = "UTF-8";
+
+    private final Context context;
+    private final ArticleCache cache;
+    private final int count;
+    // a page bigger than this would push too much else out of the cache
+    private final int maxArticleChars;
+
+    public ArticlePrefetcher(Context context) {
+        this.context = context.getApplicationContext();
+        cache = ArticleCache.getInstance(context);
+        count = context.getResources().getInteger(
+            R.integer.article_prefetch_count);
+        maxArticleChars = context.getResources().getInteger(
+            R.integer.article_cache_bytes) / 4;
+    }
+
+    /**
+     * Downloads the newest unread articles that aren't cached yet; stops
+     * early if the thread is interrupted
+     * 
+     * @return The number of articles downloaded
+     */
+    public int prefetch() {
+        int fetched = 0;
+        for (String url : loadUnreadUrls()) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            if (cache.contains(url)) {
+                continue;
+            }
+            try {
+                fetch(url);
+                fetched++;
+            } catch (IOException e) {
+                Log.w(DEBUG_TAG, "Prefetching " + url + " failed", e);
+            }
+        }
+        Log.d(DEBUG_TAG, "Prefetched " + fetched + " articles.");
+        return fetched;
+    }
+
+    /**
+     * Downloads an article into the cache; call off the main thread
+     * 
+     * @return The article's HTML
+     * @throws IOException
+     *             On network errors, unexpected HTTP status codes, or
+     *             articles too large to cache
+     */
+    public String fetch(String url) throws IOException {
+        String html = download(url);
+        cache.put(url, html);
+        return html;
+    }
+
+    private List<String> loadUnreadUrls() {
+        ArrayList<String> urls = new ArrayList<String>(count);
+        String[] projection = { TutListDatabase.COL_URL };
+        Cursor cursor = context.getContentResolver().query(
+            TutListProvider.pageUri(count), projection,
+            TutListDatabase.COL_READ + "='0'", null, null);
+        if (cursor == null) {
+            return urls;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                urls.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return urls;
+    }
+
+    private String download(String url) throws IOException {
+        URLConnection connection = new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        try {
+            if (connection instanceof HttpURLConnection) {
+                int status = ((HttpURLConnection) connection).getResponseCode();
+                if (status != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("Unexpected HTTP status " + status);
+                }
+            }
+            InputStream stream = connection.getInputStream();
+            if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+                stream = new GZIPInputStream(stream);
+            }
+            Reader in = new InputStreamReader(stream,
+                getCharset(connection.getContentType()));
+            try {
+                StringBuilder html = new StringBuilder();
+                char[] buffer = new char[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    html.append(buffer, 0, read);
+                    if (html.length() > maxArticleChars) {
+                        throw new IOException("Article too large to cache");
+                    }
+                }
+                return html.toString();
+            } finally {
+                in.close();
+            }
+        } finally {
+            if (connection instanceof HttpURLConnection) {
+                ((HttpURLConnection) connection).disconnect();
+            }
+        }
+    }
+
+    /**
+     * @return The charset named in a Content-Type header, or UTF-8
+     */
+    static String getCharset(String contentType) {
+        if (contentType != null) {
+            int index = contentType.toLowerCase().indexOf("charset=");
+            if (index != -1) {
+                String charset = contentType.substring(index + 8).trim();
+                int end = charset.indexOf(';');
+                if (end != -1) {
+                    charset = charset.substring(0, end).trim();
+                }
+                charset = charset.replace("\"", "");
+                if (charset.length() > 0) {
+                    return charset;
+                }
+            }
+        }
+        return DEFAULT_CHARSET;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.service;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+
+/**
+ * How a feed failed to refresh, which decides whether it is retried soon
+ */
+public class FeedError {
+
+    // network trouble, timeouts, an overloaded server or a failed write;
+    // likely to work again shortly
+    public static final int TRANSIENT = 1;
+    // the server refused or doesn't have the feed; retrying soon won't help
+    public static final int PERMANENT = 2;
+    // the document arrived but isn't a feed we can read
+    public static final int PARSE = 3;
+
+    // not in HttpURLConnection; like a timeout or any 5xx, worth retrying
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private FeedError() {
+    }
+
+    /**
+     * @return The kind of failure a fetch error is
+     */
+    public static int classify(IOException e) {
+        if (e instanceof HttpStatusException) {
+            int status = ((HttpStatusException) e).getStatus();
+            if (status >= HttpURLConnection.HTTP_INTERNAL_ERROR
+                || status == HttpURLConnection.HTTP_CLIENT_TIMEOUT
+                || status == HTTP_TOO_MANY_REQUESTS) {
+                return TRANSIENT;
+            }
+            return PERMANENT;
+        }
+        if (e instanceof MalformedURLException
+            || e instanceof FileNotFoundException) {
+            return PERMANENT;
+        }
+        return TRANSIENT;
+    }
+
+    public static String toString(int error) {
+        switch (error) {
+        case TRANSIENT:
+            return "transient";
+        case PERMANENT:
+            return "permanent";
+        case PARSE:
+            return "parse";
+        default:
+            return "unknown";
+        }
+    }
+}
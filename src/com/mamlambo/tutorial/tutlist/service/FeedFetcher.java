@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.zip.GZIPInputStream;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.mamlambo.tutorial.tutlist.data.TutListSharedPrefs;
+
+/**
+ * Opens feed documents with conditional GET requests, using the ETag and
+ * Last-Modified values remembered from the last successful download, and
+ * transparently decodes gzip responses.
+ */
+public class FeedFetcher {
+
+    private static final String DEBUG_TAG = "FeedFetcher";
+
+    private static final int CONNECT_TIMEOUT = 15000;
+    private static final int READ_TIMEOUT = 30000;
+
+    /**
+     * Where each feed's validators are kept between downloads
+     */
+    interface Validators {
+        public String getETag(String feedUrl);
+
+        public String getLastModified(String feedUrl);
+
+        public void set(String feedUrl, String eTag, String lastModified);
+    }
+
+    private final Validators validators;
+
+    /**
+     * Keeps the validators in TutListSharedPrefs
+     */
+    public FeedFetcher(Context context) {
+        this(prefsValidators(context.getApplicationContext()));
+    }
+
+    FeedFetcher(Validators validators) {
+        this.validators = validators;
+    }
+
+    private static Validators prefsValidators(final Context context) {
+        return new Validators() {
+            public String getETag(String feedUrl) {
+                return TutListSharedPrefs.getFeedETag(context, feedUrl);
+            }
+
+            public String getLastModified(String feedUrl) {
+                return TutListSharedPrefs.getFeedLastModified(context,
+                    feedUrl);
+            }
+
+            public void set(String feedUrl, String eTag, String lastModified) {
+                TutListSharedPrefs.setFeedValidators(context, feedUrl, eTag,
+                    lastModified);
+            }
+        };
+    }
+
+    /**
+     * Requests the feed, sending any stored validators
+     * 
+     * @param feedUrl
+     *            The feed to download
+     * @return The open response; check isNotModified() before reading
+     * @throws IOException
+     *             On network errors; an HttpStatusException for unexpected
+     *             HTTP status codes
+     */
+    public Response fetch(URL feedUrl) throws IOException {
+        String key = feedUrl.toString();
+        URLConnection connection = feedUrl.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+
+        if (!(connection instanceof HttpURLConnection)) {
+            // file: and other local urls have nothing to negotiate
+            return new Response(key, connection, connection.getInputStream(),
+                null, null);
+        }
+
+        HttpURLConnection http = (HttpURLConnection) connection;
+        // setting this ourselves turns off any transparent decoding, so the
+        // Content-Encoding header can be trusted below
+        http.setRequestProperty("Accept-Encoding", "gzip");
+        String eTag = validators.getETag(key);
+        if (eTag != null) {
+            http.setRequestProperty("If-None-Match", eTag);
+        }
+        String lastModified = validators.getLastModified(key);
+        if (lastModified != null) {
+            http.setRequestProperty("If-Modified-Since", lastModified);
+        }
+
+        int status = http.getResponseCode();
+        if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            // counted by the caller's metrics
+            http.disconnect();
+            return new Response(key, http, null, eTag, lastModified);
+        }
+        if (status != HttpURLConnection.HTTP_OK) {
+            http.disconnect();
+            throw new HttpStatusException(status, key);
+        }
+
+        InputStream stream = http.getInputStream();
+        if ("gzip".equalsIgnoreCase(http.getContentEncoding())) {
+            stream = new GZIPInputStream(stream);
+        }
+        return new Response(key, http, stream, http.getHeaderField("ETag"),
+            http.getHeaderField("Last-Modified"));
+    }
+
+    /**
+     * A single feed response. Validators are only stored once the caller
+     * has processed the body and calls commit(), so a failed parse is
+     * retried in full next time.
+     */
+    public class Response {
+        private final String key;
+        private final URLConnection connection;
+        private final InputStream stream;
+        private final String eTag;
+        private final String lastModified;
+
+        private Response(String key, URLConnection connection,
+            InputStream stream, String eTag, String lastModified) {
+            this.key = key;
+            this.connection = connection;
+            this.stream = stream;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * @return true if the server answered 304 and there is no body
+         */
+        public boolean isNotModified() {
+            return stream == null;
+        }
+
+        public InputStream getStream() {
+            return stream;
+        }
+
+        /**
+         * Remembers this response's validators for the next request
+         */
+        public void commit() {
+            if (stream != null) {
+                validators.set(key, eTag, lastModified);
+            }
+        }
+
+        public void close() {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    Log.w(DEBUG_TAG, "Error closing feed stream", e);
+                }
+            }
+            if (connection instanceof HttpURLConnection) {
+                ((HttpURLConnection) connection).disconnect();
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import android.content.ContentValues;
+import android.util.Log;
+
+import com.mamlambo.tutorial.tutlist.data.TutListDatabase;
+
+/**
+ * Pulls the items out of an RSS document. In incremental mode, parsing
+ * stops once a run of already stored items has been seen.
+ */
+class FeedParser {
+
+    private static final String DEBUG_TAG = "FeedParser";
+
+    /**
+     * Receives each new item; may block to apply backpressure
+     */
+    interface ItemSink {
+        void onItem(ContentValues item) throws InterruptedException;
+    }
+
+    private final KnownItemSet knownItems;
+    private final int stopRun;
+
+    /**
+     * @param knownItems
+     *            Urls already stored, or null to parse the whole document
+     * @param stopRun
+     *            How many known items in a row end an incremental parse
+     */
+    FeedParser(KnownItemSet knownItems, int stopRun) {
+        this.knownItems = knownItems;
+        this.stopRun = stopRun;
+    }
+
+    /**
+     * Parses a document
+     * 
+     * @param stream
+     *            The document
+     * @param highWaterMark
+     *            The newest tut_date already ingested from this feed
+     * @param sink
+     *            Receives the items not stored yet
+     * @return The newest tut_date seen, at least highWaterMark
+     */
+    long parse(InputStream stream, long highWaterMark, ItemSink sink)
+        throws XmlPullParserException, IOException, InterruptedException {
+        long newestDate = highWaterMark;
+        // feeds list newest items first, so once a run of already stored
+        // items older than the high-water mark shows up, the rest of the
+        // document is old news
+        int knownRun = 0;
+        boolean caughtUp = false;
+
+        XmlPullParser tutorials = XmlPullParserFactory.newInstance()
+            .newPullParser();
+        tutorials.setInput(stream, null);
+        int eventType = -1;
+        // psuedo code--
+        // for each found "item" tag, find "link" and "title" tags
+        // before end tag "item"
+
+        while (eventType != XmlPullParser.END_DOCUMENT && !caughtUp) {
+            if (eventType == XmlPullParser.START_TAG) {
+                String tagName = tutorials.getName();
+                if (tagName.equals("item")) {
+
+                    ContentValues tutorialData = new ContentValues();
+                    // inner loop looking for link and title
+                    while (eventType != XmlPullParser.END_DOCUMENT) {
+                        if (eventType == XmlPullParser.START_TAG) {
+                            if (tutorials.getName().equals("link")) {
+                                tutorials.next();
+                                tutorialData.put(TutListDatabase.COL_URL,
+                                    tutorials.getText());
+                            } else if (tutorials.getName().equals("title")) {
+                                tutorials.next();
+                                tutorialData.put(TutListDatabase.COL_TITLE,
+                                    tutorials.getText());
+                            } else if (tutorials.getName().equals("pubDate")) {
+                                tutorials.next();
+                                long date = Rfc822DateParser.parse(tutorials
+                                    .getText());
+                                if (date != Rfc822DateParser.INVALID) {
+                                    tutorialData.put(TutListDatabase.COL_DATE,
+                                        date / 1000);
+                                } else {
+                                    Log.w(DEBUG_TAG, "Unparseable pubDate");
+                                }
+                            }
+                        } else if (eventType == XmlPullParser.END_TAG) {
+                            if (tutorials.getName().equals("item")) {
+                                Long date = tutorialData
+                                    .getAsLong(TutListDatabase.COL_DATE);
+                                if (date != null && date > newestDate) {
+                                    newestDate = date;
+                                }
+                                if (knownItems != null
+                                    && knownItems.contains(tutorialData
+                                        .getAsString(TutListDatabase.COL_URL))) {
+                                    // already stored; skip it
+                                    if (date == null || date <= highWaterMark) {
+                                        knownRun++;
+                                        caughtUp = knownRun >= stopRun;
+                                    }
+                                    break;
+                                }
+                                knownRun = 0;
+                                // hand over the data, and then continue
+                                // with the outer loop
+                                sink.onItem(tutorialData);
+                                break;
+                            }
+                        }
+                        eventType = tutorials.next();
+                    }
+                }
+            }
+            eventType = tutorials.next();
+        }
+
+        if (caughtUp) {
+            Log.d(DEBUG_TAG, "Stopped after " + knownRun + " known items");
+        }
+        return newestDate;
+    }
+}
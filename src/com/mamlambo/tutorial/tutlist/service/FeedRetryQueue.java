@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.service;
+
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.util.Log;
+
+import com.mamlambo.tutorial.tutlist.R;
+import com.mamlambo.tutorial.tutlist.data.TutListSharedPrefs;
+import com.mamlambo.tutorial.tutlist.receiver.AlarmReceiver;
+
+/**
+ * Retries feeds that failed with a transient error, each on its own alarm
+ * carrying the feed's url. The delay doubles with every failure in a row
+ * up to a maximum, and a random half of it is dropped so devices failing
+ * together don't retry together. Retry counts live in the prefs, as the
+ * process is usually gone by the time an alarm fires. Permanent and parse
+ * errors are left to the regular refresh schedule, and with background
+ * updates off nothing is retried.
+ */
+public class FeedRetryQueue {
+
+    private static final String DEBUG_TAG = "FeedRetryQueue";
+
+    private final Context context;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final int maxAttempts;
+    private final Random random = new Random();
+
+    public FeedRetryQueue(Context context) {
+        this.context = context.getApplicationContext();
+        Resources res = context.getResources();
+        baseDelay = res.getInteger(R.integer.retry_base_seconds) * 1000L;
+        maxDelay = res.getInteger(R.integer.retry_max_seconds) * 1000L;
+        maxAttempts = res.getInteger(R.integer.retry_max_attempts);
+    }
+
+    /**
+     * Updates each feed's retry state after a run
+     * 
+     * @param feeds
+     *            The feeds the run refreshed
+     * @param failures
+     *            The failed ones, by url, with their FeedError kind
+     */
+    public void onRunFinished(List<URL> feeds, Map<String, Integer> failures) {
+        boolean background = TutListSharedPrefs
+            .getBackgroundUpdateFlag(context);
+        for (URL feed : feeds) {
+            String key = feed.toString();
+            Integer error = failures.get(key);
+            if (error == null) {
+                if (TutListSharedPrefs.getRetryAttempts(context, key) > 0) {
+                    clear(key);
+                }
+                continue;
+            }
+            if (error.intValue() != FeedError.TRANSIENT) {
+                Log.w(DEBUG_TAG, "Not retrying " + key + " after a "
+                    + FeedError.toString(error) + " error");
+                clear(key);
+                continue;
+            }
+            if (!background) {
+                // the user refreshes by hand; no alarms behind their back
+                clear(key);
+                continue;
+            }
+            int attempts = TutListSharedPrefs.getRetryAttempts(context, key) + 1;
+            if (attempts > maxAttempts) {
+                Log.w(DEBUG_TAG, "Giving up on " + key + " after "
+                    + maxAttempts + " retries");
+                clear(key);
+                continue;
+            }
+            long delay = backoff(attempts);
+            TutListSharedPrefs.setRetryState(context, key, attempts,
+                System.currentTimeMillis() + delay);
+            AlarmReceiver.setRetryAlarm(context, key, delay);
+            Log.i(DEBUG_TAG, "Retry " + attempts + " of " + key + " in "
+                + delay / 1000 + "s");
+        }
+    }
+
+    /**
+     * Drops every pending retry, so the next failure starts from the base
+     * delay again
+     */
+    public void reset() {
+        for (String key : TutListSharedPrefs.getRetryFeeds(context)) {
+            clear(key);
+        }
+    }
+
+    /**
+     * Sets the alarms of the pending retries again, as alarms don't
+     * survive a reboot; overdue ones are due at once
+     */
+    public void rearm() {
+        long now = System.currentTimeMillis();
+        for (String key : TutListSharedPrefs.getRetryFeeds(context)) {
+            long retryAt = TutListSharedPrefs.getRetryTime(context, key);
+            AlarmReceiver.setRetryAlarm(context, key, Math.max(0, retryAt
+                - now));
+        }
+    }
+
+    long backoff(int attempts) {
+        return backoff(baseDelay, maxDelay, attempts, random);
+    }
+
+    /**
+     * @return The delay before a retry: base * 2^(attempts - 1), at most
+     *         the maximum, less a random part of up to half
+     */
+    static long backoff(long baseDelay, long maxDelay, int attempts,
+        Random random) {
+        long delay = maxDelay;
+        if (attempts - 1 < 31) {
+            delay = Math.min(maxDelay, baseDelay << (attempts - 1));
+        }
+        return delay - (long) (random.nextDouble() * delay / 2);
+    }
+
+    private void clear(String key) {
+        TutListSharedPrefs.clearRetryState(context, key);
+        AlarmReceiver.cancelRetryAlarm(context, key);
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.service;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.mamlambo.tutorial.tutlist.data.TutListDatabase;
+import com.mamlambo.tutorial.tutlist.data.TutListProvider;
+import com.mamlambo.tutorial.tutlist.data.TutListSharedPrefs;
+import com.mamlambo.tutorial.tutlist.receiver.AlarmReceiver;
+
+/**
+ * Queues refresh runs and feeds them, one at a time, through an
+ * IngestionPipeline: feeds are fetched in parallel on a bounded pool with a
+ * per-host concurrency limit, and all database writes go through a single
+ * writer thread. After each run failed feeds are queued for retries and
+ * the newest unread articles are prefetched; after a run of all feeds the
+ * database is also compacted.
+ */
+public class FeedScheduler {
+
+    private static final String DEBUG_TAG = "FeedScheduler";
+
+    /**
+     * Told on the main thread when a refresh run has finished
+     */
+    public interface Callback {
+        /**
+         * @param succeeded
+         *            true if every feed was downloaded and stored
+         */
+        public void onRefreshFinished(boolean succeeded);
+    }
+
+    private final Context context;
+    private final ExecutorService runs;
+    private final IngestionPipeline pipeline;
+    private final FeedRetryQueue retries;
+    private final ArticlePrefetcher prefetcher;
+    private final Handler mainHandler;
+
+    public FeedScheduler(Context context) {
+        this.context = context.getApplicationContext();
+        runs = Executors.newSingleThreadExecutor();
+        pipeline = new IngestionPipeline(context);
+        retries = new FeedRetryQueue(context);
+        prefetcher = new ArticlePrefetcher(context);
+        mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Queues a refresh run
+     * 
+     * @param feeds
+     *            The feeds to refresh, or null for all subscribed feeds
+     * @param callback
+     *            Told on the main thread once the run has finished
+     */
+    public void refresh(final List<URL> feeds, final Callback callback) {
+        runs.execute(new Runnable() {
+            public void run() {
+                long inserted = getInsertedCount();
+                final boolean succeeded = runRefresh(feeds == null ? loadFeeds()
+                    : feeds);
+                if (feeds == null) {
+                    if (succeeded) {
+                        TutListSharedPrefs.setLastSyncTime(context,
+                            System.currentTimeMillis());
+                    }
+                    // new items move the refresh cadence
+                    AlarmReceiver.onRefreshRun(context, inserted >= 0
+                        && getInsertedCount() > inserted);
+                    // a retry of one feed has nothing new to expire
+                    compact();
+                }
+                prefetcher.prefetch();
+                mainHandler.post(new Runnable() {
+                    public void run() {
+                        callback.onRefreshFinished(succeeded);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @return The throughput metrics of the last finished run, or null
+     */
+    public IngestionMetrics getLastMetrics() {
+        return pipeline.getLastMetrics();
+    }
+
+    /**
+     * Stops all threads; queued and running work is abandoned
+     */
+    public void shutdown() {
+        runs.shutdownNow();
+        pipeline.cancel();
+    }
+
+    /**
+     * Drops the backoff of every failed feed; runs ahead of any refresh
+     * queued after it
+     */
+    public void resetRetries() {
+        runs.execute(new Runnable() {
+            public void run() {
+                retries.reset();
+            }
+        });
+    }
+
+    private boolean runRefresh(List<URL> feeds) {
+        try {
+            IngestionMetrics metrics = pipeline.run(feeds);
+            retries.onRunFinished(feeds, metrics.getFailures());
+            return metrics.getFeedsFailed() == 0;
+        } catch (InterruptedException e) {
+            Log.w(DEBUG_TAG, "Refresh interrupted");
+            return false;
+        }
+    }
+
+    /**
+     * Applies the retention policy now that new rows are in; runs on the
+     * refresh thread so nothing waits for it
+     */
+    private void compact() {
+        try {
+            context.getContentResolver().delete(TutListProvider.EXPIRED_URI,
+                null, null);
+        } catch (SQLException e) {
+            Log.e(DEBUG_TAG, "Compaction failed", e);
+        }
+    }
+
+    /**
+     * @return The number of tutorials ever inserted, or -1 if unknown
+     */
+    private long getInsertedCount() {
+        TutListProvider.Stats stats = TutListProvider.getStats(context);
+        return stats == null ? -1 : stats.inserted;
+    }
+
+    private List<URL> loadFeeds() {
+        ArrayList<URL> feeds = new ArrayList<URL>();
+        String[] projection = { TutListDatabase.COL_URL };
+        Cursor cursor = context.getContentResolver().query(
+            TutListProvider.FEEDS_CONTENT_URI, projection, null, null, null);
+        if (cursor == null) {
+            return feeds;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                try {
+                    feeds.add(new URL(cursor.getString(0)));
+                } catch (MalformedURLException e) {
+                    Log.e(DEBUG_TAG, "Bad feed URL", e);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return feeds;
+    }
+}
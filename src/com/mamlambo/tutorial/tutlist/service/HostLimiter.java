@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.service;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs tasks on an executor with at most a given number running per host.
+ * A task over its host's limit waits in the host's queue rather than on a
+ * pool thread, so the pool stays free for the other hosts; each finished
+ * task hands its slot to the next one queued for the same host.
+ */
+class HostLimiter {
+
+    private final Executor executor;
+    private final int perHostLimit;
+    // lower-cased host name to its running count and waiting tasks
+    private final HashMap<String, Host> hosts = new HashMap<String, Host>();
+
+    private static class Host {
+        int running;
+        final LinkedList<Runnable> waiting = new LinkedList<Runnable>();
+    }
+
+    HostLimiter(Executor executor, int perHostLimit) {
+        this.executor = executor;
+        this.perHostLimit = perHostLimit;
+    }
+
+    /**
+     * Runs task now if its host is under the limit, or queues it. The task
+     * must call finished() with the same host once it no longer needs its
+     * slot, or the tasks queued behind it never run.
+     * 
+     * @throws RejectedExecutionException
+     *             If the executor has been shut down
+     */
+    synchronized void execute(String host, Runnable task) {
+        Host state = host(host);
+        if (state.running < perHostLimit) {
+            executor.execute(task);
+            state.running++;
+        } else {
+            state.waiting.add(task);
+        }
+    }
+
+    /**
+     * Hands the host's slot to its next queued task, if any
+     */
+    synchronized void finished(String host) {
+        Host state = host(host);
+        Runnable next;
+        while ((next = state.waiting.poll()) != null) {
+            try {
+                executor.execute(next);
+                return;
+            } catch (RejectedExecutionException e) {
+                // shut down: whoever waits on the task must not hang
+                if (next instanceof Future<?>) {
+                    ((Future<?>) next).cancel(false);
+                }
+            }
+        }
+        state.running--;
+    }
+
+    /**
+     * @return The number of tasks queued for the host, not yet running
+     */
+    synchronized int getWaiting(String host) {
+        return host(host).waiting.size();
+    }
+
+    private Host host(String host) {
+        String key = host.toLowerCase();
+        Host state = hosts.get(key);
+        if (state == null) {
+            state = new Host();
+            hosts.put(key, state);
+        }
+        return state;
+    }
+}
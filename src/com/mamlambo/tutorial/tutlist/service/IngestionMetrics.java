@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput counters for one ingestion run. Updated concurrently by the
+ * pipeline stages; read them once the run has finished.
+ */
+public class IngestionMetrics {
+
+    private final long startNanos = System.nanoTime();
+    private volatile long elapsedNanos = -1;
+
+    private final AtomicInteger feedsSucceeded = new AtomicInteger();
+    private final AtomicInteger feedsNotModified = new AtomicInteger();
+    private final AtomicInteger feedsFailed = new AtomicInteger();
+    // failed feed url to its FeedError kind
+    private final HashMap<String, Integer> failures = new HashMap<String, Integer>();
+
+    private final AtomicLong bytesFetched = new AtomicLong();
+    private final AtomicLong itemsParsed = new AtomicLong();
+    private final AtomicLong itemsInserted = new AtomicLong();
+    private final AtomicLong itemsIgnored = new AtomicLong();
+    private final AtomicLong batchesWritten = new AtomicLong();
+
+    private int maxDocumentQueueDepth;
+    private int maxItemQueueDepth;
+    private long itemQueueDepthTotal;
+    private long itemQueueSamples;
+
+    void feedSucceeded() {
+        feedsSucceeded.incrementAndGet();
+    }
+
+    void feedNotModified() {
+        feedsNotModified.incrementAndGet();
+    }
+
+    void feedFailed(String feedUrl, int error) {
+        feedsFailed.incrementAndGet();
+        synchronized (failures) {
+            failures.put(feedUrl, error);
+        }
+    }
+
+    void bytesFetched(long bytes) {
+        bytesFetched.addAndGet(bytes);
+    }
+
+    synchronized void documentQueued(int queueDepth) {
+        if (queueDepth > maxDocumentQueueDepth) {
+            maxDocumentQueueDepth = queueDepth;
+        }
+    }
+
+    synchronized void itemQueued(int queueDepth) {
+        itemsParsed.incrementAndGet();
+        itemQueueDepthTotal += queueDepth;
+        itemQueueSamples++;
+        if (queueDepth > maxItemQueueDepth) {
+            maxItemQueueDepth = queueDepth;
+        }
+    }
+
+    void batchWritten(int inserted, int ignored) {
+        batchesWritten.incrementAndGet();
+        itemsInserted.addAndGet(inserted);
+        itemsIgnored.addAndGet(ignored);
+    }
+
+    void finish() {
+        elapsedNanos = System.nanoTime() - startNanos;
+    }
+
+    public int getFeedsSucceeded() {
+        return feedsSucceeded.get();
+    }
+
+    public int getFeedsNotModified() {
+        return feedsNotModified.get();
+    }
+
+    public int getFeedsFailed() {
+        return feedsFailed.get();
+    }
+
+    /**
+     * @return The failed feeds' urls, each with its FeedError kind
+     */
+    public Map<String, Integer> getFailures() {
+        synchronized (failures) {
+            return new HashMap<String, Integer>(failures);
+        }
+    }
+
+    public long getBytesFetched() {
+        return bytesFetched.get();
+    }
+
+    public long getItemsParsed() {
+        return itemsParsed.get();
+    }
+
+    public long getItemsInserted() {
+        return itemsInserted.get();
+    }
+
+    /**
+     * @return The items written whose url was already stored
+     */
+    public long getItemsIgnored() {
+        return itemsIgnored.get();
+    }
+
+    public long getBatchesWritten() {
+        return batchesWritten.get();
+    }
+
+    public synchronized int getMaxDocumentQueueDepth() {
+        return maxDocumentQueueDepth;
+    }
+
+    public synchronized int getMaxItemQueueDepth() {
+        return maxItemQueueDepth;
+    }
+
+    public synchronized double getAverageItemQueueDepth() {
+        return itemQueueSamples == 0 ? 0 : (double) itemQueueDepthTotal
+            / itemQueueSamples;
+    }
+
+    /**
+     * @return The run's wall time, or the time so far if still running
+     */
+    public long getElapsedMillis() {
+        long elapsed = elapsedNanos;
+        return (elapsed < 0 ? System.nanoTime() - startNanos : elapsed) / 1000000;
+    }
+
+    public double getItemsPerSecond() {
+        return perSecond(itemsParsed.get());
+    }
+
+    public double getBytesPerSecond() {
+        return perSecond(bytesFetched.get());
+    }
+
+    private double perSecond(long count) {
+        long millis = getElapsedMillis();
+        return millis == 0 ? 0 : count * 1000.0 / millis;
+    }
+
+    @Override
+    public String toString() {
+        return "feeds ok/304/failed " + getFeedsSucceeded() + "/"
+            + getFeedsNotModified() + "/" + getFeedsFailed() + ", "
+            + getItemsParsed() + " items parsed, " + getItemsInserted()
+            + " inserted and " + getItemsIgnored() + " ignored in "
+            + getBatchesWritten() + " batches, "
+            + getBytesFetched() + " bytes in " + getElapsedMillis() + "ms ("
+            + Math.round(getItemsPerSecond()) + " items/s, "
+            + Math.round(getBytesPerSecond()) + " bytes/s), queue depth max "
+            + getMaxItemQueueDepth() + " avg "
+            + Math.round(getAverageItemQueueDepth()) + ", documents max "
+            + getMaxDocumentQueueDepth();
+    }
+}
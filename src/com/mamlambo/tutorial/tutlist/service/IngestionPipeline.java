@@ -0,0 +1,485 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.res.Resources;
+import android.util.Log;
+
+import com.mamlambo.tutorial.tutlist.R;
+import com.mamlambo.tutorial.tutlist.data.TutListProvider;
+import com.mamlambo.tutorial.tutlist.data.TutListSharedPrefs;
+
+/**
+ * Ingests feeds in three decoupled stages connected by bounded queues:
+ * 
+ * <ol>
+ * <li>fetch: a pool of network threads downloads each document, with a
+ * per-host concurrency limit, and queues the body; a feed over its host's
+ * limit waits in a HostLimiter queue, not on a pool thread;</li>
+ * <li>parse: a single thread parses the queued documents and queues each
+ * new item;</li>
+ * <li>write: a single thread drains the items into the provider in
+ * batches.</li>
+ * </ol>
+ * 
+ * A full queue blocks the stage feeding it, so a slow database throttles
+ * parsing and a slow parse throttles the network. cancel() interrupts all
+ * stages. A feed's validators and high-water mark are only stored once all
+ * of its items have been written.
+ * 
+ * The parse and write stages never die on a feed's error, unchecked ones
+ * included: the feed is marked failed and the stage moves on, since the
+ * stages before it would otherwise block on a full queue forever.
+ */
+public class IngestionPipeline {
+
+    private static final String DEBUG_TAG = "IngestionPipeline";
+
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private final Context context;
+    private final ExecutorService fetchers;
+    private final ExecutorService parser;
+    private final ExecutorService writer;
+
+    private final int perHostLimit;
+
+    private final int batchSize;
+    private final int documentQueueSize;
+    private final int itemQueueSize;
+    private final int stopRun;
+    private final boolean incremental;
+
+    // futures of the run in progress, so cancel() can reach every stage
+    private final ArrayList<Future<?>> running = new ArrayList<Future<?>>();
+    private volatile boolean cancelled;
+
+    private volatile IngestionMetrics lastMetrics;
+
+    public IngestionPipeline(Context context) {
+        this.context = context.getApplicationContext();
+        Resources res = context.getResources();
+        perHostLimit = res.getInteger(R.integer.feed_fetch_per_host);
+        batchSize = res.getInteger(R.integer.ingest_batch_size);
+        documentQueueSize = res.getInteger(R.integer.ingest_document_queue);
+        itemQueueSize = res.getInteger(R.integer.ingest_item_queue);
+        stopRun = res.getInteger(R.integer.incremental_stop_run);
+        incremental = res.getBoolean(R.bool.incremental_feed_parse);
+
+        fetchers = Executors.newFixedThreadPool(res
+            .getInteger(R.integer.feed_fetch_threads));
+        parser = Executors.newSingleThreadExecutor();
+        writer = Executors.newSingleThreadExecutor();
+    }
+
+    /**
+     * Ingests the feeds, blocking until every stage has finished
+     * 
+     * @return The metrics of this run
+     * @throws InterruptedException
+     *             If the calling thread is interrupted; the run is cancelled
+     */
+    public IngestionMetrics run(List<URL> feeds) throws InterruptedException {
+        IngestionMetrics metrics = new IngestionMetrics();
+        KnownItemSet knownItems = incremental ? KnownItemSet.load(context
+            .getContentResolver()) : null;
+
+        BlockingQueue<FeedJob> documents = new ArrayBlockingQueue<FeedJob>(
+            documentQueueSize);
+        BlockingQueue<Entry> items = new ArrayBlockingQueue<Entry>(
+            itemQueueSize);
+
+        try {
+            Future<?> writing = start(writer, new WriteStage(items, metrics));
+            Future<?> parsing = start(parser, new ParseStage(documents, items,
+                new FeedParser(knownItems, stopRun), metrics));
+            HostLimiter hosts = new HostLimiter(fetchers, perHostLimit);
+            ArrayList<Future<?>> fetches = new ArrayList<Future<?>>();
+            for (URL feed : feeds) {
+                FutureTask<Void> fetch = new FutureTask<Void>(new FetchStage(
+                    new FeedJob(feed), documents, hosts, metrics), null);
+                synchronized (running) {
+                    running.add(fetch);
+                }
+                fetches.add(fetch);
+                hosts.execute(feed.getHost(), fetch);
+            }
+
+            for (Future<?> fetch : fetches) {
+                await(fetch);
+            }
+            documents.put(FeedJob.END);
+            await(parsing);
+            await(writing);
+        } catch (InterruptedException e) {
+            cancelRunning();
+            throw e;
+        } catch (RejectedExecutionException e) {
+            // cancel() shut the pools down under us
+            cancelRunning();
+            throw new InterruptedException("Ingestion cancelled");
+        } finally {
+            synchronized (running) {
+                running.clear();
+            }
+            metrics.finish();
+            lastMetrics = metrics;
+        }
+        Log.i(DEBUG_TAG, "Ingestion: " + metrics);
+        return metrics;
+    }
+
+    /**
+     * @return The metrics of the last finished run, or null
+     */
+    public IngestionMetrics getLastMetrics() {
+        return lastMetrics;
+    }
+
+    /**
+     * Cancels the run in progress and stops all threads for good
+     */
+    public void cancel() {
+        cancelled = true;
+        cancelRunning();
+        fetchers.shutdownNow();
+        parser.shutdownNow();
+        writer.shutdownNow();
+    }
+
+    private Future<?> start(ExecutorService stage, Runnable work) {
+        Future<?> future = stage.submit(work);
+        synchronized (running) {
+            running.add(future);
+        }
+        return future;
+    }
+
+    private void await(Future<?> future) throws InterruptedException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            // stages handle their own errors; anything else is a bug, and
+            // would leave the other stages waiting forever
+            Log.e(DEBUG_TAG, "Ingestion stage failed", e.getCause());
+            cancelRunning();
+            throw new InterruptedException("Ingestion stage failed");
+        } catch (CancellationException e) {
+            throw new InterruptedException("Ingestion cancelled");
+        }
+    }
+
+    private void cancelRunning() {
+        synchronized (running) {
+            for (Future<?> future : running) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * One feed's way through the pipeline. Each field is only touched by
+     * one stage at a time; the queues hand it over safely.
+     */
+    private static class FeedJob {
+        static final FeedJob END = new FeedJob(null);
+
+        final URL url;
+        FeedFetcher.Response response;
+        byte[] body;
+        long highWaterMark;
+        long newestDate;
+        boolean failed;
+        // the FeedError kind, once failed
+        int error;
+        int inserted;
+
+        FeedJob(URL url) {
+            this.url = url;
+        }
+    }
+
+    /**
+     * An item for the writer, or with a null item, the end of a feed
+     */
+    private static class Entry {
+        static final Entry END = new Entry(null, null);
+
+        final ContentValues item;
+        final FeedJob job;
+
+        Entry(ContentValues item, FeedJob job) {
+            this.item = item;
+            this.job = job;
+        }
+    }
+
+    private class FetchStage implements Runnable {
+        private final FeedJob job;
+        private final BlockingQueue<FeedJob> documents;
+        private final HostLimiter hosts;
+        private final IngestionMetrics metrics;
+
+        FetchStage(FeedJob job, BlockingQueue<FeedJob> documents,
+            HostLimiter hosts, IngestionMetrics metrics) {
+            this.job = job;
+            this.documents = documents;
+            this.hosts = hosts;
+            this.metrics = metrics;
+        }
+
+        public void run() {
+            try {
+                try {
+                    if (!fetch()) {
+                        return;
+                    }
+                } finally {
+                    // the next feed of this host may start
+                    hosts.finished(job.url.getHost());
+                }
+                documents.put(job);
+                metrics.documentQueued(documents.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * @return true if there is a document to parse
+         */
+        private boolean fetch() throws InterruptedException {
+            FeedFetcher.Response feed = null;
+            try {
+                feed = new FeedFetcher(context).fetch(job.url);
+                if (feed.isNotModified()) {
+                    // nothing new since the last download
+                    metrics.feedNotModified();
+                    return false;
+                }
+                job.response = feed;
+                job.body = readFully(feed.getStream());
+                metrics.bytesFetched(job.body.length);
+                return true;
+            } catch (InterruptedIOException e) {
+                throw new InterruptedException("Fetch interrupted");
+            } catch (IOException e) {
+                Log.e(DEBUG_TAG, "IO Error fetching " + job.url, e);
+                metrics.feedFailed(job.url.toString(), FeedError.classify(e));
+                return false;
+            } finally {
+                if (feed != null) {
+                    feed.close();
+                }
+            }
+        }
+
+        private byte[] readFully(InputStream stream) throws IOException,
+            InterruptedException {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            int count;
+            while ((count = stream.read(buffer)) != -1) {
+                if (Thread.interrupted() || cancelled) {
+                    throw new InterruptedException("Fetch cancelled");
+                }
+                body.write(buffer, 0, count);
+            }
+            return body.toByteArray();
+        }
+    }
+
+    private class ParseStage implements Runnable {
+        private final BlockingQueue<FeedJob> documents;
+        private final BlockingQueue<Entry> items;
+        private final FeedParser feedParser;
+        private final IngestionMetrics metrics;
+        private FeedJob current;
+
+        private final FeedParser.ItemSink sink = new FeedParser.ItemSink() {
+            public void onItem(ContentValues item) throws InterruptedException {
+                items.put(new Entry(item, current));
+                metrics.itemQueued(items.size());
+            }
+        };
+
+        ParseStage(BlockingQueue<FeedJob> documents,
+            BlockingQueue<Entry> items, FeedParser feedParser,
+            IngestionMetrics metrics) {
+            this.documents = documents;
+            this.items = items;
+            this.feedParser = feedParser;
+            this.metrics = metrics;
+        }
+
+        public void run() {
+            try {
+                FeedJob job;
+                while ((job = documents.take()) != FeedJob.END) {
+                    parse(job);
+                    // the writer finishes the feed once it gets here
+                    items.put(new Entry(null, job));
+                }
+                items.put(Entry.END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void parse(FeedJob job) throws InterruptedException {
+            job.highWaterMark = TutListSharedPrefs.getFeedHighWaterMark(
+                context, job.url.toString());
+            job.newestDate = job.highWaterMark;
+            current = job;
+            try {
+                job.newestDate = feedParser.parse(new ByteArrayInputStream(
+                    job.body), job.highWaterMark, sink);
+            } catch (XmlPullParserException e) {
+                Log.e(DEBUG_TAG, "Error during parsing " + job.url, e);
+                job.failed = true;
+                job.error = FeedError.PARSE;
+            } catch (IOException e) {
+                // the body is already in memory, so this is the document
+                Log.e(DEBUG_TAG, "IO Error during parsing " + job.url, e);
+                job.failed = true;
+                job.error = FeedError.PARSE;
+            } catch (RuntimeException e) {
+                // e.g. a malformed value the parser didn't expect
+                Log.e(DEBUG_TAG, "Error during parsing " + job.url, e);
+                job.failed = true;
+                job.error = FeedError.PARSE;
+            } finally {
+                job.body = null;
+                current = null;
+            }
+        }
+    }
+
+    private class WriteStage implements Runnable {
+        private final BlockingQueue<Entry> items;
+        private final IngestionMetrics metrics;
+        private final ArrayList<ContentValues> batch;
+
+        WriteStage(BlockingQueue<Entry> items, IngestionMetrics metrics) {
+            this.items = items;
+            this.metrics = metrics;
+            batch = new ArrayList<ContentValues>(batchSize);
+        }
+
+        public void run() {
+            try {
+                // items of one feed are followed by its end entry, and
+                // feeds never interleave, so a batch is always one feed's
+                Entry entry;
+                while ((entry = items.take()) != Entry.END) {
+                    if (entry.item != null) {
+                        batch.add(entry.item);
+                        if (batch.size() >= batchSize) {
+                            flush(entry.job);
+                        }
+                    } else {
+                        // keep whatever was parsed before any error
+                        flush(entry.job);
+                        try {
+                            finish(entry.job);
+                        } catch (RuntimeException e) {
+                            Log.e(DEBUG_TAG, "Error finishing "
+                                + entry.job.url, e);
+                            metrics.feedFailed(entry.job.url.toString(),
+                                FeedError.TRANSIENT);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Writes the batch, all from job, in one provider transaction
+         */
+        private void flush(FeedJob job) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                TutListProvider.InsertCounts counts = TutListProvider
+                    .insertTutorials(context,
+                        batch.toArray(new ContentValues[batch.size()]), false);
+                metrics.batchWritten(counts.inserted, counts.ignored);
+                job.inserted += counts.inserted;
+            } catch (RuntimeException e) {
+                Log.e(DEBUG_TAG, "Error writing items from " + job.url, e);
+                job.failed = true;
+                job.error = FeedError.TRANSIENT;
+            }
+            batch.clear();
+        }
+
+        private void finish(FeedJob job) {
+            String feedKey = job.url.toString();
+            if (job.failed) {
+                metrics.feedFailed(feedKey, job.error);
+                return;
+            }
+            if (job.newestDate > job.highWaterMark) {
+                TutListSharedPrefs.setFeedHighWaterMark(context, feedKey,
+                    job.newestDate);
+            }
+            job.response.commit();
+            metrics.feedSucceeded();
+            Log.d(DEBUG_TAG, "Inserted " + job.inserted + " items from "
+                + feedKey);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.service;
+
+import java.util.Arrays;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+
+import com.mamlambo.tutorial.tutlist.data.TutListDatabase;
+import com.mamlambo.tutorial.tutlist.data.TutListProvider;
+
+/**
+ * Compact, read-only set of the urls already stored in the tutorials
+ * table. Urls are kept as sorted 64-bit hashes, so a lookup is a binary
+ * search with no allocation and the set costs eight bytes per row.
+ */
+public class KnownItemSet {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long[] hashes;
+
+    private KnownItemSet(long[] hashes) {
+        this.hashes = hashes;
+    }
+
+    /**
+     * Loads the urls of all stored tutorials
+     * 
+     * @param resolver
+     *            A content resolver
+     * @return The set, empty if the query fails
+     */
+    public static KnownItemSet load(ContentResolver resolver) {
+        String[] projection = { TutListDatabase.COL_URL };
+        Cursor cursor = resolver.query(TutListProvider.CONTENT_URI,
+            projection, null, null, null);
+        if (cursor == null) {
+            return new KnownItemSet(new long[0]);
+        }
+        try {
+            long[] hashes = new long[cursor.getCount()];
+            int size = 0;
+            while (cursor.moveToNext()) {
+                hashes[size++] = hash(cursor.getString(0));
+            }
+            if (size < hashes.length) {
+                long[] trimmed = new long[size];
+                System.arraycopy(hashes, 0, trimmed, 0, size);
+                hashes = trimmed;
+            }
+            Arrays.sort(hashes);
+            return new KnownItemSet(hashes);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @return A set of the given urls
+     */
+    static KnownItemSet of(String... urls) {
+        long[] hashes = new long[urls.length];
+        for (int i = 0; i < urls.length; i++) {
+            hashes[i] = hash(urls[i]);
+        }
+        Arrays.sort(hashes);
+        return new KnownItemSet(hashes);
+    }
+
+    public boolean contains(String url) {
+        return url != null && Arrays.binarySearch(hashes, hash(url)) >= 0;
+    }
+
+    public int size() {
+        return hashes.length;
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 code units of the string
+     */
+    static long hash(String value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            hash ^= c & 0xff;
+            hash *= FNV_PRIME;
+            hash ^= c >>> 8;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+}
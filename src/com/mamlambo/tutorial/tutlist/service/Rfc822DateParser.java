@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.service;
+
+/**
+ * Allocation-free parser for RFC 822 / RFC 2822 dates as used by RSS
+ * pubDate elements, e.g. "Tue, 15 Mar 2011 11:30:00 +0000".
+ * 
+ * Accepts an optional day-of-week, two or four digit years, optional
+ * seconds, numeric offsets and the named zones of RFC 822. Unknown
+ * military zone letters are treated as UTC, as RFC 2822 recommends. The
+ * parser keeps no state, so it is safe to share between threads.
+ */
+public final class Rfc822DateParser {
+
+    /** Returned by parse() when the text is not a valid date */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_MINUTE = 60L * 1000;
+    private static final long MILLIS_PER_DAY = 24L * 60 * MILLIS_PER_MINUTE;
+
+    private static final String MONTHS = "janfebmaraprmayjunjulaugsepoctnovdec";
+
+    private Rfc822DateParser() {
+    }
+
+    /**
+     * Parses a date
+     * 
+     * @param text
+     *            The date text; surrounding whitespace is ignored
+     * @return Milliseconds since the epoch, or INVALID
+     */
+    public static long parse(CharSequence text) {
+        if (text == null) {
+            return INVALID;
+        }
+        int length = text.length();
+        int pos = skipSpace(text, 0, length);
+
+        // optional day of week, e.g. "Tue,"
+        if (pos < length && isLetter(text.charAt(pos))) {
+            while (pos < length && isLetter(text.charAt(pos))) {
+                pos++;
+            }
+            if (pos >= length || text.charAt(pos) != ',') {
+                return INVALID;
+            }
+            pos = skipSpace(text, pos + 1, length);
+        }
+
+        // day of month
+        int start = pos;
+        int day = 0;
+        while (pos < length && isDigit(text.charAt(pos))) {
+            day = day * 10 + (text.charAt(pos++) - '0');
+        }
+        if (pos == start || pos - start > 2 || day < 1 || day > 31) {
+            return INVALID;
+        }
+        pos = skipSpace(text, pos, length);
+
+        // month name
+        if (pos + 3 > length) {
+            return INVALID;
+        }
+        int month = monthOf(text.charAt(pos), text.charAt(pos + 1),
+                text.charAt(pos + 2));
+        if (month == 0) {
+            return INVALID;
+        }
+        pos += 3;
+        while (pos < length && isLetter(text.charAt(pos))) {
+            // tolerate full month names
+            pos++;
+        }
+        pos = skipSpace(text, pos, length);
+
+        // year
+        start = pos;
+        int year = 0;
+        while (pos < length && isDigit(text.charAt(pos))) {
+            year = year * 10 + (text.charAt(pos++) - '0');
+        }
+        int yearDigits = pos - start;
+        if (yearDigits == 2) {
+            year += year < 50 ? 2000 : 1900;
+        } else if (yearDigits != 4) {
+            return INVALID;
+        }
+        if (day > daysInMonth(year, month)) {
+            return INVALID;
+        }
+        long millis = daysFromCivil(year, month, day) * MILLIS_PER_DAY;
+
+        pos = skipSpace(text, pos, length);
+        if (pos == length) {
+            // date only; midnight UTC
+            return millis;
+        }
+
+        // time of day, HH:MM[:SS]
+        int hour = twoDigits(text, pos, length);
+        if (hour < 0 || hour > 23 || pos + 2 >= length
+                || text.charAt(pos + 2) != ':') {
+            return INVALID;
+        }
+        pos += 3;
+        int minute = twoDigits(text, pos, length);
+        if (minute < 0 || minute > 59) {
+            return INVALID;
+        }
+        pos += 2;
+        int second = 0;
+        if (pos < length && text.charAt(pos) == ':') {
+            second = twoDigits(text, pos + 1, length);
+            if (second < 0 || second > 60) {
+                return INVALID;
+            }
+            pos += 3;
+        }
+        millis += ((hour * 60L + minute) * 60L + second) * 1000L;
+
+        pos = skipSpace(text, pos, length);
+        if (pos == length) {
+            // no zone given; assume UTC
+            return millis;
+        }
+
+        int offsetMinutes = zoneOffset(text, pos, length);
+        if (offsetMinutes == Integer.MIN_VALUE) {
+            return INVALID;
+        }
+        return millis - offsetMinutes * MILLIS_PER_MINUTE;
+    }
+
+    /**
+     * @return The zone offset in minutes east of UTC, or Integer.MIN_VALUE
+     */
+    private static int zoneOffset(CharSequence text, int pos, int length) {
+        char first = text.charAt(pos);
+        if (first == '+' || first == '-') {
+            int hours = twoDigits(text, pos + 1, length);
+            int minutes = twoDigits(text, pos + 3, length);
+            if (hours < 0 || minutes < 0 || minutes > 59) {
+                return Integer.MIN_VALUE;
+            }
+            int offset = hours * 60 + minutes;
+            return first == '-' ? -offset : offset;
+        }
+
+        int end = pos;
+        while (end < length && isLetter(text.charAt(end))) {
+            end++;
+        }
+        int letters = end - pos;
+        if (letters == 1) {
+            // military zones; RFC 2822 says to treat them as UTC
+            return 0;
+        }
+        if (letters == 2 && matches(text, pos, 'u', 't')) {
+            return 0;
+        }
+        if (letters == 3) {
+            char a = lower(text.charAt(pos));
+            char b = lower(text.charAt(pos + 1));
+            char c = lower(text.charAt(pos + 2));
+            if ((a == 'g' && b == 'm' && c == 't')
+                    || (a == 'u' && b == 't' && c == 'c')) {
+                return 0;
+            }
+            if (c == 't' && (b == 's' || b == 'd')) {
+                int daylight = b == 'd' ? 60 : 0;
+                switch (a) {
+                case 'e':
+                    return -5 * 60 + daylight;
+                case 'c':
+                    return -6 * 60 + daylight;
+                case 'm':
+                    return -7 * 60 + daylight;
+                case 'p':
+                    return -8 * 60 + daylight;
+                }
+            }
+        }
+        return Integer.MIN_VALUE;
+    }
+
+    /**
+     * Days since 1970-01-01 in the proleptic Gregorian calendar
+     */
+    static long daysFromCivil(int year, int month, int day) {
+        if (month <= 2) {
+            year--;
+        }
+        long era = (year >= 0 ? year : year - 399) / 400;
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day
+                - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100
+                + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+        case 2:
+            boolean leap = (year % 4 == 0 && year % 100 != 0)
+                    || year % 400 == 0;
+            return leap ? 29 : 28;
+        case 4:
+        case 6:
+        case 9:
+        case 11:
+            return 30;
+        default:
+            return 31;
+        }
+    }
+
+    /**
+     * @return 1-12, or 0 if the letters are not a month abbreviation
+     */
+    private static int monthOf(char a, char b, char c) {
+        a = lower(a);
+        b = lower(b);
+        c = lower(c);
+        for (int i = 0; i < MONTHS.length(); i += 3) {
+            if (MONTHS.charAt(i) == a && MONTHS.charAt(i + 1) == b
+                    && MONTHS.charAt(i + 2) == c) {
+                return i / 3 + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static int twoDigits(CharSequence text, int pos, int length) {
+        if (pos + 2 > length) {
+            return -1;
+        }
+        char tens = text.charAt(pos);
+        char ones = text.charAt(pos + 1);
+        if (!isDigit(tens) || !isDigit(ones)) {
+            return -1;
+        }
+        return (tens - '0') * 10 + (ones - '0');
+    }
+
+    private static boolean matches(CharSequence text, int pos, char a, char b) {
+        return lower(text.charAt(pos)) == a && lower(text.charAt(pos + 1)) == b;
+    }
+
+    private static int skipSpace(CharSequence text, int pos, int length) {
+        while (pos < length && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static char lower(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+}
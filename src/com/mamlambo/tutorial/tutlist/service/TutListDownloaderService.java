@@ -30,57 +30,82 @@
  */
 package com.mamlambo.tutorial.tutlist.service;
 
-import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-
-import org.xmlpull.v1.XmlPullParser;
-import org.xmlpull.v1.XmlPullParserException;
-import org.xmlpull.v1.XmlPullParserFactory;
+import java.util.Collections;
+import java.util.List;
 
 import android.app.Notification;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
 import android.appwidget.AppWidgetManager;
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
-import android.os.AsyncTask;
 import android.os.IBinder;
 import android.util.Log;
 
 import com.mamlambo.tutorial.tutlist.R;
 import com.mamlambo.tutorial.tutlist.TutListActivity;
-import com.mamlambo.tutorial.tutlist.data.TutListDatabase;
 import com.mamlambo.tutorial.tutlist.data.TutListProvider;
+import com.mamlambo.tutorial.tutlist.data.TutListSharedPrefs;
 import com.mamlambo.tutorial.tutwidget.TutWidgetProvider;
 
 public class TutListDownloaderService extends Service {
 
     private static final String DEBUG_TAG = "TutListDownloaderService";
-    private DownloaderTask tutorialDownloader;
+
+    // a boolean extra; true for a refresh the user asked for, which drops
+    // the backoff of any failed feeds
+    public static final String EXTRA_MANUAL = "manual";
+    private FeedScheduler scheduler;
 
     private static final int LIST_UPDATE_NOTIFICATION = 100;
 
     @Override
-    public int onStartCommand(Intent intent, int flags, int startId) {
-        URL tutorialPath;
-        try {
-            String url = intent.getDataString();
-            if (url != null && (url.length() > 0)) {
-                tutorialPath = new URL(url);
-                tutorialDownloader = new DownloaderTask();
-                tutorialDownloader.execute(tutorialPath);
+    public void onCreate() {
+        super.onCreate();
+        scheduler = new FeedScheduler(this);
+    }
+
+    @Override
+    public void onDestroy() {
+        scheduler.shutdown();
+        super.onDestroy();
+    }
+
+    /**
+     * Refreshes the feed given as the intent's data, or every subscribed
+     * feed if there is none
+     */
+    @Override
+    public int onStartCommand(Intent intent, int flags, final int startId) {
+        List<URL> feeds = null;
+        String url = intent != null ? intent.getDataString() : null;
+        if (url != null && (url.length() > 0)) {
+            try {
+                feeds = Collections.singletonList(new URL(url));
+            } catch (MalformedURLException e) {
+                Log.e(DEBUG_TAG, "Bad URL", e);
+                stopSelf(startId);
+                return Service.START_FLAG_REDELIVERY;
             }
-        } catch (MalformedURLException e) {
-            Log.e(DEBUG_TAG, "Bad URL", e);
         }
 
+        final boolean manual = intent != null
+            && intent.getBooleanExtra(EXTRA_MANUAL, false);
+        if (manual) {
+            scheduler.resetRetries();
+        }
+
+        final boolean retry = feeds != null;
+        scheduler.refresh(feeds, new FeedScheduler.Callback() {
+            public void onRefreshFinished(boolean succeeded) {
+                notifyRefreshFinished(succeeded, manual, retry);
+                stopSelf(startId);
+            }
+        });
+
         return Service.START_FLAG_REDELIVERY;
     }
 
@@ -89,137 +114,89 @@ public class TutListDownloaderService extends Service {
         return null;
     }
 
-    private class DownloaderTask extends AsyncTask<URL, Void, Boolean> {
+    /**
+     * Updates the widget and posts the refresh notification, unless the
+     * run is one to keep quiet about
+     */
+    private void notifyRefreshFinished(boolean result, boolean manual,
+        boolean retry) {
+        Context context = getApplicationContext();
+
+        // also update widget
+        TutWidgetProvider.updateWidgetContent(context,
+            AppWidgetManager.getInstance(context));
+
+        TutListProvider.Stats stats = TutListProvider.getStats(context);
+        long newItems = countNewItems(context, stats);
+        if (isQuiet(result, manual, retry, newItems)) {
+            return;
+        }
 
-        private static final String DEBUG_TAG = "TutListDownloaderService$DownloaderTask";
+        NotificationManager notificationManager = (NotificationManager) context
+            .getSystemService(NOTIFICATION_SERVICE);
 
-        @Override
-        protected Boolean doInBackground(URL... params) {
-            boolean succeeded = false;
-            URL downloadPath = params[0];
+        Notification updateComplete = new Notification();
+        updateComplete.icon = android.R.drawable.stat_notify_sync;
+        updateComplete.tickerText = context
+            .getText(R.string.notification_title);
+        updateComplete.when = System.currentTimeMillis();
 
-            if (downloadPath != null) {
-                succeeded = xmlParse(downloadPath);
-            }
-            return succeeded;
-        }
+        Intent notificationIntent = new Intent(context, TutListActivity.class);
+        PendingIntent contentIntent = PendingIntent.getActivity(context, 0,
+            notificationIntent, 0);
 
-        private boolean xmlParse(URL downloadPath) {
-            boolean succeeded = false;
+        String contentTitle = context.getText(R.string.notification_title)
+            .toString();
 
-            XmlPullParser tutorials;
+        String contentText;
+        if (!result && newItems <= 0) {
+            Log.w(DEBUG_TAG, "XML download and parse had errors");
+            contentText = context.getText(R.string.notification_info_fail)
+                .toString();
+        } else if (stats == null) {
+            contentText = context.getText(R.string.notification_info_success)
+                .toString();
+        } else {
+            contentText = context.getString(R.string.notification_info_new,
+                Math.max(0, newItems), stats.unread);
+        }
+        updateComplete.setLatestEventInfo(context, contentTitle, contentText,
+            contentIntent);
 
-            try {
-                tutorials = XmlPullParserFactory.newInstance().newPullParser();
-                tutorials.setInput(downloadPath.openStream(), null);
-                int eventType = -1;
-                // psuedo code--
-                // for each found "item" tag, find "link" and "title" tags
-                // before end tag "item"
-
-                while (eventType != XmlPullParser.END_DOCUMENT) {
-                    if (eventType == XmlPullParser.START_TAG) {
-                        String tagName = tutorials.getName();
-                        if (tagName.equals("item")) {
-
-                            ContentValues tutorialData = new ContentValues();
-                            // inner loop looking for link and title
-                            while (eventType != XmlPullParser.END_DOCUMENT) {
-                                if (eventType == XmlPullParser.START_TAG) {
-                                    if (tutorials.getName().equals("link")) {
-                                        tutorials.next();
-                                        Log.d(DEBUG_TAG, "Link: "
-                                            + tutorials.getText());
-                                        tutorialData.put(
-                                            TutListDatabase.COL_URL, tutorials
-                                                .getText());
-                                    } else if (tutorials.getName().equals(
-                                        "title")) {
-                                        tutorials.next();
-                                        tutorialData.put(
-                                            TutListDatabase.COL_TITLE,
-                                            tutorials.getText());
-                                    } else if (tutorials.getName().equals("pubDate")) {
-                                        tutorials.next();
-                                        DateFormat parser = new SimpleDateFormat("E, dd MMM yyyy");
-                                        try {
-                                            Date date = parser.parse(tutorials.getText());
-                                            tutorialData.put(TutListDatabase.COL_DATE, 
-                                                    date.getTime() / 1000);
-                                        } catch (ParseException e) {
-                                            Log.e(DEBUG_TAG, "Error parsing date: " 
-                                                    + tutorials.getText());
-                                        }
-                                    }
-                                } else if (eventType == XmlPullParser.END_TAG) {
-                                    if (tutorials.getName().equals("item")) {
-                                        // save the data, and then continue with
-                                        // the outer loop
-                                        getContentResolver().insert(
-                                            TutListProvider.CONTENT_URI,
-                                            tutorialData);
-                                        break;
-                                    }
-                                }
-                                eventType = tutorials.next();
-                            }
-                        }
-                    }
-                    eventType = tutorials.next();
-                }
-                // no exceptions during parsing
-                succeeded = true;
-            } catch (XmlPullParserException e) {
-                Log.e(DEBUG_TAG, "Error during parsing", e);
-            } catch (IOException e) {
-                Log.e(DEBUG_TAG, "IO Error during parsing", e);
-            }
+        notificationManager.notify(LIST_UPDATE_NOTIFICATION, updateComplete);
+    }
 
-            return succeeded;
+    /**
+     * A refresh the user asked for always reports back. A scheduled run
+     * reports a failure, and a success unless it is known to have found
+     * nothing new. A retry only reports a success, since a failed one is
+     * queued again or given up on quietly.
+     * 
+     * @param newItems
+     *            The tutorials the run inserted, or -1 if unknown
+     * @return true if no notification should be posted
+     */
+    static boolean isQuiet(boolean result, boolean manual, boolean retry,
+        long newItems) {
+        if (manual) {
+            return false;
         }
+        return result ? newItems == 0 : retry;
+    }
 
-        @Override
-        protected void onPostExecute(Boolean result) {
-            Context context = TutListDownloaderService.this
-                .getApplicationContext();
-            NotificationManager notificationManager = (NotificationManager) context
-                .getSystemService(NOTIFICATION_SERVICE);
-
-            Notification updateComplete = new Notification();
-            updateComplete.icon = android.R.drawable.stat_notify_sync;
-            updateComplete.tickerText = context
-                .getText(R.string.notification_title);
-            updateComplete.when = System.currentTimeMillis();
-
-            Intent notificationIntent = new Intent(context,
-                TutListActivity.class);
-            PendingIntent contentIntent = PendingIntent.getActivity(context, 0,
-                notificationIntent, 0);
-
-            String contentTitle = context.getText(R.string.notification_title)
-                .toString();
-
-            String contentText;
-            if (!result) {
-                Log.w(DEBUG_TAG, "XML download and parse had errors");
-                contentText = context.getText(R.string.notification_info_fail)
-                    .toString();
-            } else {
-                contentText = context.getText(
-                    R.string.notification_info_success).toString();
-            }
-            updateComplete.setLatestEventInfo(context, contentTitle,
-                contentText, contentIntent);
-
-            notificationManager
-                .notify(LIST_UPDATE_NOTIFICATION, updateComplete);
-            
-            // also update widget
-            TutWidgetProvider.updateWidgetContent(context, AppWidgetManager.getInstance(context));
-            
-            // all done
-            stopSelf();
+    /**
+     * Counts the tutorials inserted since the last count from the
+     * provider's stats row, without counting any rows
+     * 
+     * @return The count, or -1 if unknown
+     */
+    private long countNewItems(Context context, TutListProvider.Stats stats) {
+        if (stats == null) {
+            return -1;
         }
+        long seen = TutListSharedPrefs.getSeenInsertedCount(context);
+        TutListSharedPrefs.setSeenInsertedCount(context, stats.inserted);
+        return seen < 0 ? -1 : stats.inserted - seen;
     }
 
 }
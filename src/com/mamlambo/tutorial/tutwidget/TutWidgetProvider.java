@@ -1,19 +1,19 @@
 package com.mamlambo.tutorial.tutwidget;
 
+import java.util.Date;
+
 import android.app.PendingIntent;
 import android.appwidget.AppWidgetManager;
 import android.appwidget.AppWidgetProvider;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
-import android.net.Uri;
+import android.text.format.DateFormat;
 import android.util.Log;
 import android.widget.RemoteViews;
 
 import com.mamlambo.tutorial.tutlist.R;
 import com.mamlambo.tutorial.tutlist.TutListActivity;
-import com.mamlambo.tutorial.tutlist.data.TutListDatabase;
 import com.mamlambo.tutorial.tutlist.data.TutListProvider;
 
 public class TutWidgetProvider extends AppWidgetProvider {
@@ -36,18 +36,30 @@ public class TutWidgetProvider extends AppWidgetProvider {
 			AppWidgetManager appWidgetManager) {
 		String strLatestTitle = "None Available";
 		
-		String [] projection = {TutListDatabase.COL_TITLE};
-		Uri content = TutListProvider.CONTENT_URI;
-		Cursor cursor = context.getContentResolver().query(content, projection, null, null, TutListDatabase.COL_DATE + " desc LIMIT 1");
-		if (cursor.moveToFirst()) {
-			strLatestTitle = cursor.getString(0);
+		// call() on API 11+, no cursor needed for one title
+		String latestTitle = TutListProvider.getLatestTitle(context);
+		if (latestTitle != null) {
+			strLatestTitle = latestTitle;
 		}
-		cursor.close();
 		
 		// Update the app widget controls
 		RemoteViews remoteView = new RemoteViews(context.getPackageName(), R.layout.tutlist_appwidget_layout);
 		remoteView.setTextViewText(R.id.title, strLatestTitle);
 
+		// the counts are kept by the database, so this is a single row
+		TutListProvider.Stats stats = TutListProvider.getStats(context);
+		if (stats != null) {
+			String counts = context.getString(R.string.appwidget_counts,
+					stats.unread, stats.total);
+			long lastSync = TutListProvider.getLastSyncTime(context);
+			if (lastSync > 0) {
+				counts = context.getString(R.string.appwidget_counts_synced,
+						counts, DateFormat.getTimeFormat(context).format(
+								new Date(lastSync)));
+			}
+			remoteView.setTextViewText(R.id.counts, counts);
+		}
+
 		// add click handling
 		Intent launchAppIntent = new Intent(context, TutListActivity.class);
 		PendingIntent launchAppPendingIntent = PendingIntent.getActivity(context, 0, launchAppIntent,
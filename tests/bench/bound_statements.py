@@ -0,0 +1,92 @@
+#!/usr/bin/env python3
+"""Times the provider's fixed queries with literal against bound arguments.
+
+Before the statement registry, a TUTORIAL_ID query put the id into the
+WHERE clause as text, so every id was a new statement for SQLite to
+prepare, and the unread count was prepared afresh on each call. This
+script times each lookup both ways on the v5 tutorials table with 20k
+rows: the literal SQL with statement caching off, and the bound SQL
+reused from the cache, which is what a compiled SQLiteStatement does.
+
+    python3 tests/bench/bound_statements.py
+"""
+
+import random
+import sqlite3
+import time
+
+ROWS = 20000
+CALLS = 50000
+
+SCHEMA = """
+CREATE TABLE tutorials (_id integer PRIMARY KEY AUTOINCREMENT,
+    title text NOT NULL, url text UNIQUE NOT NULL,
+    tut_date INTEGER NOT NULL DEFAULT (strftime('%s','now')),
+    read INTEGER NOT NULL default 0);
+CREATE INDEX tutorials_read_date ON tutorials (read, tut_date DESC);
+CREATE INDEX tutorials_date ON tutorials (tut_date);
+"""
+
+ROW = "SELECT _id, title, url, tut_date, read FROM tutorials"
+
+
+def create(cached):
+    db = sqlite3.connect(":memory:", isolation_level=None,
+                         cached_statements=cached)
+    db.executescript(SCHEMA)
+    db.execute("BEGIN")
+    db.executemany(
+        "INSERT INTO tutorials (title, url, tut_date) VALUES (?, ?, ?)",
+        (("title %d" % i, "http://example.com/%d" % i, i)
+         for i in range(ROWS)))
+    db.execute("COMMIT")
+    return db
+
+
+def micros(name, db, lookup, ids):
+    start = time.perf_counter()
+    for i in ids:
+        lookup(db, i)
+    print("%-33s %6.2f us/call"
+          % (name, (time.perf_counter() - start) / len(ids) * 1e6))
+
+
+def main():
+    rand = random.Random(3)
+    ids = [rand.randint(1, ROWS) for _ in range(CALLS)]
+    print("%d rows, %d calls, sqlite %s"
+          % (ROWS, CALLS, sqlite3.sqlite_version))
+
+    def by_literal_id(db, i):
+        return db.execute(ROW + " WHERE _id=%d" % i).fetchall()
+
+    def by_bound_id(db, i):
+        return db.execute(ROW + " WHERE _id=?", (i,)).fetchall()
+
+    def mark_literal(db, i):
+        db.execute("UPDATE tutorials SET read=1 WHERE _id=%d" % i)
+
+    def mark_bound(db, i):
+        db.execute("UPDATE tutorials SET read=1 WHERE _id=? AND read=0",
+                   (i,))
+
+    def count_unread(db, i):
+        return db.execute("SELECT count(*) FROM tutorials "
+                          "WHERE read=0").fetchone()
+
+    literal, bound = create(0), create(100)
+    for i in ids[:100]:
+        assert by_literal_id(literal, i) == by_bound_id(bound, i)
+
+    micros("row by id, literal (before)", literal, by_literal_id, ids)
+    micros("row by id, bound (after)", bound, by_bound_id, ids)
+    micros("mark read, literal (before)", literal, mark_literal, ids)
+    micros("mark read, bound (after)", bound, mark_bound, ids)
+    assert count_unread(literal, 0) == count_unread(bound, 0)
+    micros("unread count, prepared each call", literal, count_unread,
+           ids[:CALLS // 10])
+    micros("unread count, compiled", bound, count_unread, ids[:CALLS // 10])
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,116 @@
+#!/usr/bin/env python3
+"""Times title search with LIKE '%x%' against the fts3 table.
+
+Builds the tutorials table, the tutorials_fts shadow table and its sync
+triggers as TutListDatabase creates them (v7), fills it with 200k
+generated titles, and times the provider's ranked search query against
+the LIKE scan it replaced, for common, rare and prefix terms. Also
+checks that the update and delete triggers keep the shadow table in
+step.
+
+Needs Python 3 with an sqlite3 module built with FTS3, as CPython's
+usually is:
+
+    python3 tests/bench/fts_search.py
+"""
+
+import random
+import sqlite3
+import time
+
+ROWS = 200000
+RUNS = 5
+WORDS = ("android ios design build create game corona sdk tablet titanium "
+         "mobile pizza app interface builder setup phone graphics export "
+         "png jpeg virtual device configuration brick breaker order form "
+         "topping selection best tuts february slicing comp controls "
+         "application").split()
+
+SCHEMA = """
+CREATE TABLE tutorials (_id integer PRIMARY KEY AUTOINCREMENT,
+    title text NOT NULL, url text UNIQUE NOT NULL,
+    tut_date INTEGER NOT NULL DEFAULT (strftime('%s','now')),
+    read INTEGER NOT NULL default 0);
+CREATE INDEX tutorials_date ON tutorials (tut_date);
+CREATE VIRTUAL TABLE tutorials_fts USING fts3(title);
+CREATE TRIGGER tutorials_fts_insert AFTER INSERT ON tutorials BEGIN
+    INSERT INTO tutorials_fts (docid, title) VALUES (new._id, new.title); END;
+CREATE TRIGGER tutorials_fts_update AFTER UPDATE OF title ON tutorials BEGIN
+    UPDATE tutorials_fts SET title = new.title WHERE docid = old._id; END;
+CREATE TRIGGER tutorials_fts_delete AFTER DELETE ON tutorials BEGIN
+    DELETE FROM tutorials_fts WHERE docid = old._id; END;
+"""
+
+# TutListProvider's SEARCH query: the provider joins tutorials_view, which
+# only adds a read-state lookup per matched row
+FTS = """SELECT tutorials._id, tutorials.title FROM tutorials_fts
+    JOIN tutorials ON (tutorials._id = tutorials_fts.docid)
+    WHERE tutorials_fts MATCH ?
+    ORDER BY length(offsets(tutorials_fts))
+        - length(replace(offsets(tutorials_fts), ' ', '')) DESC,
+        tutorials.tut_date DESC
+    LIMIT 50"""
+
+# what a filter through query()'s selection had to do before
+LIKE = """SELECT _id, title FROM tutorials WHERE title LIKE ?
+    ORDER BY tut_date DESC LIMIT 50"""
+
+# (name, LIKE pattern, MATCH expression as TutListSearch builds it)
+SEARCHES = [
+    # LIKE stops after 50 hits in date order; fts ranks every match
+    ("two common words", "%pizza%topping%", "pizza* topping*"),
+    ("rare term", "%199999%", "199999*"),
+    # LIKE also matches inside a word, fts only at its start
+    ("rare prefix", "%17777%", "17777*"),
+]
+
+
+def create():
+    db = sqlite3.connect(":memory:", isolation_level=None)
+    db.executescript(SCHEMA)
+    rand = random.Random(1)
+    db.execute("BEGIN")
+    db.executemany(
+        "INSERT INTO tutorials (title, url, tut_date) VALUES (?, ?, ?)",
+        ((" ".join(rand.choice(WORDS) for _ in range(rand.randint(4, 10)))
+          + " " + str(i), "http://example.com/%d" % i, i)
+         for i in range(ROWS)))
+    db.execute("COMMIT")
+    return db
+
+
+def millis(db, sql, arg):
+    start = time.perf_counter()
+    for _ in range(RUNS):
+        rows = db.execute(sql, (arg,)).fetchall()
+    return (time.perf_counter() - start) / RUNS * 1000, rows
+
+
+def check_triggers(db):
+    db.execute("UPDATE tutorials SET title = 'zzzunique' WHERE _id = 5")
+    db.execute("DELETE FROM tutorials WHERE _id = 6")
+    renamed = db.execute("SELECT docid FROM tutorials_fts "
+                         "WHERE tutorials_fts MATCH 'zzzuni*'").fetchall()
+    deleted = db.execute("SELECT count(*) FROM tutorials_fts "
+                         "WHERE docid = 6").fetchone()[0]
+    assert renamed == [(5,)], renamed
+    assert deleted == 0, deleted
+
+
+def main():
+    db = create()
+    print("%d titles, sqlite %s" % (ROWS, sqlite3.sqlite_version))
+    for name, pattern, match in SEARCHES:
+        like_ms, like_rows = millis(db, LIKE, pattern)
+        fts_ms, fts_rows = millis(db, FTS, match)
+        print("%-17s LIKE %7.2f ms (%2d rows)   FTS %6.2f ms (%2d rows)"
+              % (name, like_ms, len(like_rows), fts_ms, len(fts_rows)))
+        # whole words: both ways find the same titles
+        if name == "rare term":
+            assert sorted(like_rows) == sorted(fts_rows)
+    check_triggers(db)
+    print("triggers: update and delete reach tutorials_fts")
+
+
+if __name__ == "__main__":
+    main()
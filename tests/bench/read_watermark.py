@@ -0,0 +1,124 @@
+#!/usr/bin/env python3
+"""Times "mark all read" and unread reads, read column against watermark.
+
+Before v8 each tutorial had its own read flag, so marking everything read
+rewrote every unread row. Since v8 a tutorial is read if its id is at or
+below a watermark, unless read_exceptions says otherwise, and
+tutorials_view computes the flag; marking all read moves the watermark
+and empties the exceptions. The script builds both models on 100k rows
+in the same read state (the newer half unread, 200 exceptions), checks
+they agree on which rows are unread, and times marking all read, the
+list's first unread page and the unread count.
+
+    python3 tests/bench/read_watermark.py
+"""
+
+import random
+import sqlite3
+import time
+
+ROWS = 100000
+WATERMARK = ROWS // 2
+EXCEPTIONS = 200
+
+TABLE = """
+CREATE TABLE tutorials (_id integer PRIMARY KEY AUTOINCREMENT,
+    title text NOT NULL, url text UNIQUE NOT NULL,
+    tut_date INTEGER NOT NULL DEFAULT (strftime('%s','now')),
+    read INTEGER NOT NULL default 0);
+CREATE INDEX tutorials_date ON tutorials (tut_date);
+"""
+
+# v5 to v7
+READ_COLUMN = """
+CREATE INDEX tutorials_read_date ON tutorials (read, tut_date DESC);
+"""
+
+# v8, as TutListDatabase creates it
+READ_STATE = """
+CREATE TABLE read_watermark (watermark INTEGER NOT NULL);
+INSERT INTO read_watermark VALUES (0);
+CREATE TABLE read_exceptions (tut_id INTEGER PRIMARY KEY,
+    read INTEGER NOT NULL);
+CREATE VIEW tutorials_view AS SELECT t._id AS _id, t.title AS title,
+    t.url AS url, t.tut_date AS tut_date,
+    CAST(COALESCE(e.read, t._id <= (SELECT watermark FROM read_watermark))
+        AS INTEGER) AS read
+    FROM tutorials t LEFT JOIN read_exceptions e ON e.tut_id = t._id;
+"""
+
+UNREAD_PAGE = ("SELECT _id, title, tut_date, read, url FROM %s "
+               "WHERE read='0' ORDER BY tut_date DESC, _id DESC LIMIT 50")
+UNREAD_COUNT = "SELECT count(*) FROM %s WHERE read='0'"
+
+
+def create(schema):
+    db = sqlite3.connect(":memory:", isolation_level=None)
+    db.executescript(TABLE + schema)
+    db.execute("BEGIN")
+    db.executemany(
+        "INSERT INTO tutorials (title, url, tut_date) VALUES (?, ?, ?)",
+        (("title %d" % i, "http://example.com/%d" % i, i)
+         for i in range(1, ROWS + 1)))
+    db.execute("COMMIT")
+    return db
+
+
+def millis(f, runs=1):
+    start = time.perf_counter()
+    for _ in range(runs):
+        result = f()
+    return (time.perf_counter() - start) / runs * 1000, result
+
+
+def report(name, ms):
+    print("%-22s %8.3f ms" % (name, ms))
+
+
+def main():
+    rand = random.Random(2)
+    # (id, read) against the watermark's answer
+    exceptions = [(i, 0 if i <= WATERMARK else 1)
+                  for i in rand.sample(range(1, ROWS + 1), EXCEPTIONS)]
+    print("%d rows, sqlite %s" % (ROWS, sqlite3.sqlite_version))
+
+    old = create(READ_COLUMN)
+    old.execute("UPDATE tutorials SET read=1 WHERE _id <= ?", (WATERMARK,))
+    old.executemany("UPDATE tutorials SET read=? WHERE _id=?",
+                    [(read, i) for i, read in exceptions])
+
+    new = create(READ_STATE)
+    new.execute("UPDATE read_watermark SET watermark=?", (WATERMARK,))
+    new.executemany("INSERT INTO read_exceptions VALUES (?, ?)", exceptions)
+
+    old_page = lambda: old.execute(UNREAD_PAGE % "tutorials").fetchall()
+    new_page = lambda: new.execute(UNREAD_PAGE % "tutorials_view").fetchall()
+    old_count = lambda: old.execute(UNREAD_COUNT % "tutorials").fetchone()
+    new_count = lambda: new.execute(
+        UNREAD_COUNT % "tutorials_view").fetchone()
+    assert old_page() == new_page()
+    assert old_count() == new_count()
+
+    print("before: read column")
+    report("unread page", millis(old_page, 50)[0])
+    report("unread count", millis(old_count, 20)[0])
+    report("mark all read", millis(lambda: old.execute(
+        "UPDATE tutorials SET read='1' WHERE read='0'"))[0])
+
+    print("after: watermark and exceptions")
+    report("unread page", millis(new_page, 50)[0])
+    report("unread count, view", millis(new_count, 20)[0])
+
+    def mark_all_read():
+        new.execute("BEGIN")
+        new.execute("UPDATE read_watermark SET watermark = "
+                    "(SELECT coalesce(max(_id), 0) FROM tutorials)")
+        new.execute("DELETE FROM read_exceptions")
+        new.execute("COMMIT")
+    report("mark all read", millis(mark_all_read)[0])
+
+    assert old_count() == new_count() == (0,)
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,121 @@
+#!/usr/bin/env python3
+"""Times list reads while an ingestion writes, rollback journal against WAL.
+
+One thread plays the downloader: it keeps writing 500-row transactions,
+holding each open for a while as parsing would. Another plays the list,
+reading the first page over and over on its own connection. The run is
+repeated with the rollback journal and with write-ahead logging plus
+synchronous=NORMAL, as TutListDatabase sets it up from API 11, and the
+reader's latency percentiles are printed for both.
+
+Uses a database file in the temp directory, since WAL needs one:
+
+    python3 tests/bench/wal_readers.py
+"""
+
+import os
+import sqlite3
+import tempfile
+import threading
+import time
+
+ROWS = 20000
+BATCH = 500
+# parse work done while the write transaction is open
+HOLD_SECONDS = 0.02
+READ_PAUSE_SECONDS = 0.005
+RUN_SECONDS = 5
+
+SCHEMA = """
+CREATE TABLE tutorials (_id integer PRIMARY KEY AUTOINCREMENT,
+    title text NOT NULL, url text UNIQUE NOT NULL,
+    tut_date INTEGER NOT NULL DEFAULT (strftime('%s','now')),
+    read INTEGER NOT NULL default 0);
+CREATE INDEX tutorials_date ON tutorials (tut_date);
+"""
+
+INSERT = ("INSERT OR IGNORE INTO tutorials (title, url, tut_date) "
+          "VALUES (?, ?, ?)")
+FIRST_PAGE = ("SELECT _id, title, tut_date, read, url FROM tutorials "
+              "ORDER BY tut_date DESC, _id DESC LIMIT 50")
+
+
+def connect(path, wal):
+    db = sqlite3.connect(path, isolation_level=None, timeout=30,
+                         check_same_thread=False)
+    if wal:
+        db.execute("PRAGMA synchronous = NORMAL")
+    return db
+
+
+def create(path, wal):
+    for suffix in ("", "-wal", "-shm", "-journal"):
+        if os.path.exists(path + suffix):
+            os.remove(path + suffix)
+    db = connect(path, wal)
+    db.execute("PRAGMA journal_mode = " + ("WAL" if wal else "DELETE"))
+    db.executescript(SCHEMA)
+    db.execute("BEGIN")
+    db.executemany(INSERT, (("t%d" % i, "u%d" % i, i) for i in range(ROWS)))
+    db.execute("COMMIT")
+    db.close()
+
+
+def run(path, wal):
+    create(path, wal)
+    stop = threading.Event()
+    latencies = []
+
+    def write():
+        db = connect(path, wal)
+        i = ROWS
+        while not stop.is_set():
+            db.execute("BEGIN IMMEDIATE")
+            for _ in range(BATCH):
+                db.execute(INSERT, ("x" * 60, "w%d" % i, i))
+                i += 1
+            time.sleep(HOLD_SECONDS)
+            db.execute("COMMIT")
+        db.close()
+
+    def read():
+        db = connect(path, wal)
+        while not stop.is_set():
+            start = time.perf_counter()
+            rows = db.execute(FIRST_PAGE).fetchall()
+            latencies.append((time.perf_counter() - start) * 1000)
+            assert len(rows) == 50
+            time.sleep(READ_PAUSE_SECONDS)
+        db.close()
+
+    threads = [threading.Thread(target=write), threading.Thread(target=read)]
+    for thread in threads:
+        thread.start()
+    time.sleep(RUN_SECONDS)
+    stop.set()
+    for thread in threads:
+        thread.join()
+
+    latencies.sort()
+    n = len(latencies)
+    print("%-8s %5d reads  p50 %6.2f ms  p95 %6.2f ms  p99 %6.2f ms  "
+          "max %6.1f ms" % ("wal" if wal else "rollback", n,
+                            latencies[n // 2], latencies[int(n * .95)],
+                            latencies[int(n * .99)], latencies[-1]))
+
+
+def main():
+    directory = tempfile.mkdtemp(prefix="tutlist-bench")
+    path = os.path.join(directory, "tutorial_data")
+    print("sqlite %s" % sqlite3.sqlite_version)
+    try:
+        run(path, False)
+        run(path, True)
+    finally:
+        for name in os.listdir(directory):
+            os.remove(os.path.join(directory, name))
+        os.rmdir(directory)
+
+
+if __name__ == "__main__":
+    main()
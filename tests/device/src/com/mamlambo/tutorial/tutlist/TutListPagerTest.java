@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import com.mamlambo.tutorial.tutlist.data.IsolatedTutListContext;
+import com.mamlambo.tutorial.tutlist.data.TutListDatabase;
+import com.mamlambo.tutorial.tutlist.data.TutListProvider;
+
+/**
+ * Counts the page queries TutListPager makes while rows are marked read
+ */
+public class TutListPagerTest extends InstrumentationTestCase {
+
+    private static final String DEBUG_TAG = "TutListPagerTest";
+
+    private static final int ROWS = 300;
+    private static final int MARKED = 100;
+    // above the change log's limit for logging rows one by one
+    private static final int MARKED_BROADLY = 200;
+    private static final long FIRST_DATE = 1300000000;
+
+    // no query for this long means the pager has settled
+    private static final long SETTLE_MILLIS = 500;
+    private static final long TIMEOUT_MILLIS = 20000;
+
+    private IsolatedTutListContext context;
+    private TutListPager pager;
+    private int pageSize;
+    // the queries of a full load, which is also what a reload costs
+    private int loadQueries;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        context = new IsolatedTutListContext(getInstrumentation()
+                .getTargetContext());
+        pageSize = context.getResources().getInteger(
+                R.integer.list_page_size);
+        ContentValues[] rows = new ContentValues[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            rows[i] = new ContentValues();
+            rows[i].put(TutListDatabase.COL_TITLE, "Tutorial " + i);
+            rows[i].put(TutListDatabase.COL_URL,
+                    "http://example.com/tutorials/" + i);
+            rows[i].put(TutListDatabase.COL_DATE, FIRST_DATE + i);
+        }
+        context.getContentResolver().bulkInsert(TutListProvider.CONTENT_URI,
+                rows);
+
+        context.getProvider().resetCounts();
+        getInstrumentation().runOnMainSync(new Runnable() {
+            public void run() {
+                pager = new TutListPager(context,
+                        new TutListPager.Listener() {
+                            public void onPagesChanged() {
+                            }
+                        });
+                pager.setSelection(null);
+            }
+        });
+        awaitSettled();
+        loadQueries = context.getProvider().getQueries();
+        assertTrue("The marked rows must all be loaded",
+                getLoadedCount() >= MARKED);
+        context.getProvider().resetCounts();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            public void run() {
+                pager.close();
+            }
+        });
+        context.clear();
+        super.tearDown();
+    }
+
+    /**
+     * Each read mark refills at most the one page holding the row; a full
+     * reload per mark would cost loadQueries each
+     */
+    public void testMarkingReadOneByOne() throws Exception {
+        long[] ids = getLoadedIds(MARKED);
+        for (long id : ids) {
+            TutListProvider.markItemRead(context, id);
+        }
+        awaitSettled();
+
+        int queries = context.getProvider().getQueries();
+        Log.i(DEBUG_TAG, MARKED + " read marks one by one: " + queries
+                + " page queries, " + loadQueries + " per reload");
+        assertTrue(queries > 0);
+        assertTrue(queries <= MARKED);
+        assertAllRead(MARKED);
+    }
+
+    /**
+     * One update of rows the change log lists one by one refills just the
+     * pages holding them
+     */
+    public void testMarkingReadInOneUpdate() throws Exception {
+        markNewestRead(MARKED);
+        awaitSettled();
+
+        int queries = context.getProvider().getQueries();
+        Log.i(DEBUG_TAG, MARKED + " read marks in one update: " + queries
+                + " page queries");
+        assertEquals((MARKED + pageSize - 1) / pageSize, queries);
+        assertAllRead(MARKED);
+    }
+
+    /**
+     * An update of more rows than the change log lists one by one is
+     * logged as a reset, and the pager reloads once
+     */
+    public void testMarkingReadAboveResetThreshold() throws Exception {
+        markNewestRead(MARKED_BROADLY);
+        awaitSettled();
+
+        int queries = context.getProvider().getQueries();
+        Log.i(DEBUG_TAG, MARKED_BROADLY + " read marks in one update: "
+                + queries + " page queries");
+        assertEquals(loadQueries, queries);
+        assertAllRead(MARKED);
+    }
+
+    private void markNewestRead(int count) {
+        ContentValues values = new ContentValues();
+        values.put(TutListDatabase.COL_READ, "1");
+        int updated = context.getContentResolver().update(
+                TutListProvider.CONTENT_URI, values,
+                TutListDatabase.COL_DATE + ">=?",
+                new String[] { String.valueOf(FIRST_DATE + ROWS - count) });
+        assertEquals(count, updated);
+    }
+
+    /**
+     * Waits until the pager has made no query for SETTLE_MILLIS
+     */
+    private void awaitSettled() throws InterruptedException {
+        long deadline = SystemClock.uptimeMillis() + TIMEOUT_MILLIS;
+        int queries = -1;
+        long quietSince = 0;
+        while (SystemClock.uptimeMillis() < deadline) {
+            getInstrumentation().waitForIdleSync();
+            long now = SystemClock.uptimeMillis();
+            int current = context.getProvider().getQueries();
+            if (current != queries) {
+                queries = current;
+                quietSince = now;
+            } else if (now - quietSince >= SETTLE_MILLIS) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        fail("The pager kept querying");
+    }
+
+    private int getLoadedCount() {
+        final int[] count = new int[1];
+        getInstrumentation().runOnMainSync(new Runnable() {
+            public void run() {
+                count[0] = pager.getCount();
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * @return The ids of the first rows, as the pager has them
+     */
+    private long[] getLoadedIds(int count) {
+        return getColumn(TutListPager.COLUMN_ID, count);
+    }
+
+    private void assertAllRead(int count) {
+        long[] read = getColumn(TutListPager.COLUMN_READ, count);
+        for (int i = 0; i < count; i++) {
+            assertEquals("Row " + i, 1, read[i]);
+        }
+    }
+
+    /**
+     * Reads a column of the first rows on the main thread; asserts that
+     * they are all loaded
+     */
+    private long[] getColumn(final int column, final int count) {
+        final long[] values = new long[count];
+        final int[] loaded = new int[1];
+        getInstrumentation().runOnMainSync(new Runnable() {
+            public void run() {
+                for (; loaded[0] < count; loaded[0]++) {
+                    Cursor row = pager.moveToPosition(loaded[0]);
+                    if (row == null) {
+                        return;
+                    }
+                    values[loaded[0]] = row.getLong(column);
+                }
+            }
+        });
+        assertEquals("Loaded rows", count, loaded[0]);
+        return values;
+    }
+}
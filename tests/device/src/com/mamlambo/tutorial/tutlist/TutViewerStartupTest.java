@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist;
+
+import java.util.Arrays;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.content.res.Configuration;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+/**
+ * Measures how long TutViewerActivity takes to open 20 articles in a row,
+ * with each one inflating a new WebView and with each one borrowing the
+ * WebView the last one gave back to WebViewPool. The numbers are logged;
+ * only the pool's reuse is asserted.
+ */
+public class TutViewerStartupTest extends InstrumentationTestCase {
+
+    private static final String DEBUG_TAG = "TutViewerStartupTest";
+
+    private static final int ARTICLES = 20;
+    private static final long RELEASE_TIMEOUT_MILLIS = 5000;
+
+    private Context target;
+    private WebViewPool pool;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        target = getInstrumentation().getTargetContext();
+        pool = WebViewPool.getInstance(target);
+        trimPool();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        trimPool();
+        super.tearDown();
+    }
+
+    public void testOpeningArticlesWithAndWithoutPool() throws Exception {
+        int orientation = target.getResources().getConfiguration().orientation;
+        if (orientation == Configuration.ORIENTATION_LANDSCAPE) {
+            // the viewer activity closes itself in landscape
+            Log.w(DEBUG_TAG, "Skipped: needs portrait");
+            return;
+        }
+        // the first WebView of a process also starts the engine; that
+        // cost belongs to neither run
+        open(0, false);
+
+        long[] fresh = new long[ARTICLES];
+        for (int i = 0; i < ARTICLES; i++) {
+            fresh[i] = open(i, false);
+        }
+        open(0, true);
+        long[] pooled = new long[ARTICLES];
+        for (int i = 0; i < ARTICLES; i++) {
+            assertEquals(1, getIdleCount());
+            pooled[i] = open(i, true);
+        }
+
+        report("without pool", fresh);
+        report("with pool", pooled);
+    }
+
+    /**
+     * Opens an article in a new TutViewerActivity and closes it again
+     * 
+     * @param keep
+     *            true to leave its WebView in the pool for the next one
+     * @return The milliseconds until the activity was up
+     */
+    private long open(int article, boolean keep) throws InterruptedException {
+        Intent intent = new Intent(Intent.ACTION_VIEW,
+                Uri.parse("about:blank#" + article));
+        intent.setClassName(target, TutViewerActivity.class.getName());
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+
+        long start = SystemClock.uptimeMillis();
+        final Activity activity = getInstrumentation().startActivitySync(
+                intent);
+        long elapsed = SystemClock.uptimeMillis() - start;
+
+        getInstrumentation().runOnMainSync(new Runnable() {
+            public void run() {
+                activity.finish();
+            }
+        });
+        // the WebView is idle once its blank page has loaded
+        long deadline = SystemClock.uptimeMillis() + RELEASE_TIMEOUT_MILLIS;
+        while (getIdleCount() == 0) {
+            assertTrue("The WebView never came back to the pool",
+                    SystemClock.uptimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+        if (!keep) {
+            trimPool();
+        }
+        return elapsed;
+    }
+
+    private int getIdleCount() {
+        final int[] count = new int[1];
+        getInstrumentation().runOnMainSync(new Runnable() {
+            public void run() {
+                count[0] = pool.getIdleCount();
+            }
+        });
+        return count[0];
+    }
+
+    private void trimPool() {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            public void run() {
+                pool.trim(0);
+            }
+        });
+    }
+
+    private static void report(String run, long[] millis) {
+        long total = 0;
+        for (long m : millis) {
+            total += m;
+        }
+        long[] sorted = millis.clone();
+        Arrays.sort(sorted);
+        Log.i(DEBUG_TAG, ARTICLES + " articles " + run + ": " + total
+                + " ms, median " + sorted[sorted.length / 2] + " ms, max "
+                + sorted[sorted.length - 1] + " ms");
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.SharedPreferences;
+import android.test.RenamingDelegatingContext;
+
+/**
+ * A context with its own TutListProvider, on a renamed database and with
+ * renamed preferences, so a test never touches the installed app's data.
+ * The provider is reached through a resolver that counts notifications.
+ */
+public class IsolatedTutListContext extends ContextWrapper {
+
+    private static final String PREFIX = "test.";
+
+    private final RenamingDelegatingContext target;
+    private final CountingResolver resolver;
+    private final CountingProvider provider = new CountingProvider();
+
+    public IsolatedTutListContext(Context context) {
+        this(new RenamingDelegatingContext(context, PREFIX));
+    }
+
+    private IsolatedTutListContext(RenamingDelegatingContext target) {
+        super(target);
+        this.target = target;
+        resolver = new CountingResolver(target.getContentResolver());
+        // picks up a database left behind by an earlier run
+        target.makeExistingFilesAndDbsAccessible();
+        clear();
+        provider.attachInfo(this, null);
+        resolver.addProvider(TutListProvider.CONTENT_URI.getAuthority(),
+                provider);
+    }
+
+    public CountingProvider getProvider() {
+        return provider;
+    }
+
+    public CountingResolver getResolver() {
+        return resolver;
+    }
+
+    /**
+     * Deletes the database and the preferences. The provider must not be
+     * used afterwards.
+     */
+    public void clear() {
+        for (String database : target.databaseList()) {
+            target.deleteDatabase(database);
+        }
+        getSharedPreferences(TutListSharedPrefs.PREFS_NAME, 0).edit().clear()
+                .commit();
+    }
+
+    @Override
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    @Override
+    public ContentResolver getContentResolver() {
+        return resolver;
+    }
+
+    @Override
+    public SharedPreferences getSharedPreferences(String name, int mode) {
+        return super.getSharedPreferences(PREFIX + name, mode);
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.data;
+
+import java.util.Locale;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/**
+ * Compares TutListProvider's hot-row cache with the database path it sits
+ * in front of, for the lookups the widget, the list and the click handler
+ * repeat: a row by id, the newest row and the unread count. A query with
+ * a selection always goes to the database, which is what every lookup did
+ * before the cache. The numbers are logged; matching results and the
+ * cache's hit counter are asserted.
+ */
+public class TutListCacheLatencyTest extends AndroidTestCase {
+
+    private static final String DEBUG_TAG = "TutListCacheLatencyTest";
+
+    private static final int ROWS = 1000;
+    // the rows looked up over and over; well within provider_cache_entries
+    private static final int HOT_ROWS = 20;
+    private static final int WARM_UP = 200;
+    private static final int LOOKUPS = 2000;
+
+    private static final String[] ROW = { TutListDatabase.ID,
+            TutListDatabase.COL_TITLE, TutListDatabase.COL_URL };
+    // true for every row, and enough to take the query off the cache
+    private static final String ANY = "1";
+
+    /**
+     * One lookup, by either path
+     */
+    private interface Lookup {
+        public String run(int i);
+    }
+
+    private IsolatedTutListContext context;
+    private ContentResolver resolver;
+    private long[] hotIds;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        context = new IsolatedTutListContext(getContext());
+        resolver = context.getContentResolver();
+        ContentValues[] rows = new ContentValues[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            rows[i] = new ContentValues();
+            rows[i].put(TutListDatabase.COL_TITLE, "Tutorial " + i);
+            rows[i].put(TutListDatabase.COL_URL,
+                    "http://example.com/tutorials/" + i);
+            rows[i].put(TutListDatabase.COL_DATE, 1300000000L + i);
+        }
+        resolver.bulkInsert(TutListProvider.CONTENT_URI, rows);
+
+        Cursor cursor = resolver.query(TutListProvider.pageUri(HOT_ROWS),
+                new String[] { TutListDatabase.ID }, null, null, null);
+        try {
+            hotIds = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                hotIds[i] = cursor.getLong(0);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        context.clear();
+        super.tearDown();
+    }
+
+    public void testRowById() {
+        compare("row by id", new Lookup() {
+            public String run(int i) {
+                return string(query(rowUri(i), ROW, null));
+            }
+        }, new Lookup() {
+            public String run(int i) {
+                return string(query(rowUri(i), ROW, ANY));
+            }
+        });
+    }
+
+    public void testLatestRow() {
+        compare("latest row", new Lookup() {
+            public String run(int i) {
+                return string(query(TutListProvider.LATEST_URI, ROW, null));
+            }
+        }, new Lookup() {
+            public String run(int i) {
+                return string(query(TutListProvider.pageUri(1), ROW, ANY));
+            }
+        });
+    }
+
+    public void testUnreadCount() {
+        compare("unread count", new Lookup() {
+            public String run(int i) {
+                return string(query(TutListProvider.UNREAD_COUNT_URI,
+                        new String[] { TutListProvider.COL_COUNT }, null));
+            }
+        }, new Lookup() {
+            public String run(int i) {
+                return string(query(TutListProvider.STATS_URI,
+                        new String[] { TutListDatabase.COL_UNREAD }, ANY));
+            }
+        });
+    }
+
+    private void compare(String name, Lookup cached, Lookup uncached) {
+        for (int i = 0; i < HOT_ROWS; i++) {
+            assertEquals(uncached.run(i), cached.run(i));
+        }
+        long hits = cacheHits();
+        long viaCache = time(cached);
+        // every cached lookup after the first pass is a hit
+        assertEquals(WARM_UP + LOOKUPS, cacheHits() - hits);
+        long viaDatabase = time(uncached);
+        Log.i(DEBUG_TAG, String.format(Locale.US,
+                "%s: cache %.1f us, database %.1f us per lookup", name,
+                viaCache / 1000.0, viaDatabase / 1000.0));
+    }
+
+    /**
+     * @return The average nanoseconds per lookup, after a warm-up
+     */
+    private static long time(Lookup lookup) {
+        for (int i = 0; i < WARM_UP; i++) {
+            lookup.run(i);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookup.run(i);
+        }
+        return (System.nanoTime() - start) / LOOKUPS;
+    }
+
+    private Uri rowUri(int i) {
+        return ContentUris.withAppendedId(TutListProvider.CONTENT_URI,
+                hotIds[i % hotIds.length]);
+    }
+
+    private Cursor query(Uri uri, String[] projection, String selection) {
+        return resolver.query(uri, projection, selection, null, null);
+    }
+
+    /**
+     * @return The cache's hit counter, the first of CACHE_STATS_COLUMNS
+     */
+    private long cacheHits() {
+        Cursor cursor = query(TutListProvider.CACHE_STATS_URI, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @return The first row's columns, joined, and the cursor closed
+     */
+    private static String string(Cursor cursor) {
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            StringBuilder row = new StringBuilder();
+            for (int i = 0; i < cursor.getColumnCount(); i++) {
+                row.append(cursor.getString(i)).append('|');
+            }
+            return row.toString();
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.data;
+
+import java.util.Locale;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/**
+ * Compares the latency of TutListProvider's call() fast path with the
+ * query() path it replaced, for the widget's and the click handler's
+ * lookups. The numbers are logged; only matching results are asserted.
+ */
+public class TutListProviderCallTest extends AndroidTestCase {
+
+    private static final String DEBUG_TAG = "TutListProviderCallTest";
+
+    private static final int ROWS = 1000;
+    private static final int WARM_UP = 200;
+    private static final int CALLS = 2000;
+
+    /**
+     * One lookup, by either path
+     */
+    private interface Lookup {
+        public String run(int i);
+    }
+
+    private IsolatedTutListContext context;
+    private ContentResolver resolver;
+    private long[] ids;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        context = new IsolatedTutListContext(getContext());
+        resolver = context.getContentResolver();
+        ContentValues[] rows = new ContentValues[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            rows[i] = new ContentValues();
+            rows[i].put(TutListDatabase.COL_TITLE, "Tutorial " + i);
+            rows[i].put(TutListDatabase.COL_URL,
+                    "http://example.com/tutorials/" + i);
+            rows[i].put(TutListDatabase.COL_DATE, 1300000000L + i);
+        }
+        resolver.bulkInsert(TutListProvider.CONTENT_URI, rows);
+
+        Cursor cursor = resolver.query(TutListProvider.CONTENT_URI,
+                new String[] { TutListDatabase.ID }, null, null, null);
+        try {
+            ids = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getLong(0);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        context.clear();
+        super.tearDown();
+    }
+
+    public void testLatestTitle() {
+        compare("latest title", new Lookup() {
+            public String run(int i) {
+                return call(TutListProvider.METHOD_LATEST_TITLE, null)
+                        .getString(TutListProvider.CALL_RESULT);
+            }
+        }, new Lookup() {
+            public String run(int i) {
+                return query(TutListProvider.LATEST_URI,
+                        TutListDatabase.COL_TITLE);
+            }
+        });
+    }
+
+    public void testUnreadCount() {
+        compare("unread count", new Lookup() {
+            public String run(int i) {
+                return String.valueOf(call(
+                        TutListProvider.METHOD_UNREAD_COUNT, null).getLong(
+                        TutListProvider.CALL_RESULT));
+            }
+        }, new Lookup() {
+            public String run(int i) {
+                return query(TutListProvider.UNREAD_COUNT_URI,
+                        TutListProvider.COL_COUNT);
+            }
+        });
+    }
+
+    /**
+     * Walks all rows, so both paths see the same cache hits and misses
+     */
+    public void testUrlById() {
+        compare("url by id", new Lookup() {
+            public String run(int i) {
+                return call(TutListProvider.METHOD_URL_BY_ID,
+                        String.valueOf(ids[i % ids.length])).getString(
+                        TutListProvider.CALL_RESULT);
+            }
+        }, new Lookup() {
+            public String run(int i) {
+                return query(ContentUris.withAppendedId(
+                        TutListProvider.CONTENT_URI, ids[i % ids.length]),
+                        TutListDatabase.COL_URL);
+            }
+        });
+    }
+
+    private void compare(String name, Lookup viaCall, Lookup viaQuery) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
+            Log.w(DEBUG_TAG, "Skipped: call() needs API 11");
+            return;
+        }
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals(viaQuery.run(i), viaCall.run(i));
+        }
+        long call = time(viaCall);
+        long query = time(viaQuery);
+        Log.i(DEBUG_TAG, String.format(Locale.US,
+                "%s: call() %.1f us, query() %.1f us per lookup", name,
+                call / 1000.0, query / 1000.0));
+    }
+
+    /**
+     * @return The average nanoseconds per lookup, after a warm-up
+     */
+    private static long time(Lookup lookup) {
+        for (int i = 0; i < WARM_UP; i++) {
+            lookup.run(i);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < CALLS; i++) {
+            lookup.run(i);
+        }
+        return (System.nanoTime() - start) / CALLS;
+    }
+
+    private Bundle call(String method, String arg) {
+        return resolver.call(TutListProvider.CONTENT_URI, method, arg, null);
+    }
+
+    /**
+     * What the helpers do below API 11
+     */
+    private String query(Uri uri, String column) {
+        Cursor cursor = resolver.query(uri, new String[] { column }, null,
+                null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+}
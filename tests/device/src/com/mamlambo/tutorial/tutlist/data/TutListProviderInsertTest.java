@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.test.AndroidTestCase;
+
+/**
+ * Checks the counts TutListProvider.insertTutorials() reports, with and
+ * without CONFLICT_REPLACE
+ */
+public class TutListProviderInsertTest extends AndroidTestCase {
+
+    private IsolatedTutListContext context;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        context = new IsolatedTutListContext(getContext());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        context.clear();
+        super.tearDown();
+    }
+
+    public void testIgnoreCountsDuplicates() {
+        TutListProvider.InsertCounts counts = insert(false, row(1, "One"),
+                row(2, "Two"));
+        assertCounts(2, 0, 0, counts);
+
+        counts = insert(false, row(2, "Two, renamed"), row(3, "Three"));
+        assertCounts(1, 0, 1, counts);
+        assertEquals("Two", titleOf(2));
+    }
+
+    public void testReplaceCountsUpdatedRows() {
+        insert(false, row(1, "One"), row(2, "Two"));
+
+        TutListProvider.InsertCounts counts = insert(true, row(1, "One"),
+                row(2, "Two, renamed"), row(3, "Three"));
+        if (counts.updated >= 0) {
+            assertCounts(1, 1, 1, counts);
+        } else {
+            // below API 11 the update is counted as inserted
+            assertEquals(2, counts.inserted);
+            assertEquals(1, counts.ignored);
+        }
+        assertEquals("Two, renamed", titleOf(2));
+    }
+
+    /**
+     * A row without a title keeps the stored one, and the rest of the batch
+     * is still written
+     */
+    public void testReplaceKeepsTitleWhenNull() {
+        insert(false, row(1, "One"));
+
+        TutListProvider.InsertCounts counts = insert(true, row(1, null),
+                row(2, "Two"));
+        assertEquals(1, counts.inserted);
+        assertEquals(1, counts.ignored);
+        assertEquals("One", titleOf(1));
+        assertEquals("Two", titleOf(2));
+    }
+
+    private TutListProvider.InsertCounts insert(boolean replace,
+            ContentValues... rows) {
+        return TutListProvider.insertTutorials(context, rows, replace);
+    }
+
+    private static void assertCounts(int inserted, int updated, int ignored,
+            TutListProvider.InsertCounts counts) {
+        assertEquals(inserted, counts.inserted);
+        assertEquals(updated, counts.updated);
+        assertEquals(ignored, counts.ignored);
+    }
+
+    private static ContentValues row(int i, String title) {
+        ContentValues row = new ContentValues();
+        row.put(TutListDatabase.COL_TITLE, title);
+        row.put(TutListDatabase.COL_URL, url(i));
+        row.put(TutListDatabase.COL_DATE, 1300000000L + i);
+        return row;
+    }
+
+    private static String url(int i) {
+        return "http://example.com/tutorials/" + i;
+    }
+
+    private String titleOf(int i) {
+        Cursor cursor = context.getContentResolver().query(
+                TutListProvider.CONTENT_URI,
+                new String[] { TutListDatabase.COL_TITLE },
+                TutListDatabase.COL_URL + "=?", new String[] { url(i) }, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.data;
+
+import java.util.Random;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/**
+ * Runs EXPLAIN QUERY PLAN for the list's page queries and the widget's
+ * newest-row query on 100k tutorials, and checks that the tut_date index
+ * both finds and orders the rows, so none of them scans and sorts the
+ * table
+ */
+public class TutListQueryPlanTest extends AndroidTestCase {
+
+    private static final String DEBUG_TAG = "TutListQueryPlanTest";
+
+    private static final int ROWS = 100000;
+    private static final String PAGE_SIZE = "50";
+    private static final String UNREAD = TutListDatabase.COL_READ + "='0'";
+
+    // a year of dates, some shared
+    private static final long OLDEST = 1300000000L;
+    private static final int MINUTES = 365 * 24 * 60;
+
+    private IsolatedTutListContext context;
+    private TutListDatabase helper;
+    private SQLiteDatabase db;
+    private final Random random = new Random(5);
+    private String before;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        context = new IsolatedTutListContext(getContext());
+        helper = new TutListDatabase(context);
+        db = helper.getWritableDatabase();
+        // the older half read, so the unread filter drops rows
+        insert(0, ROWS / 2);
+        new TutListStatements(helper).markAllRead();
+        insert(ROWS / 2, ROWS);
+        before = (OLDEST + MINUTES / 2 * 60L) + "," + (ROWS / 2);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        helper.close();
+        context.clear();
+        super.tearDown();
+    }
+
+    private void insert(int from, int to) {
+        db.beginTransaction();
+        SQLiteStatement insert = db.compileStatement("INSERT INTO "
+                + TutListDatabase.TABLE_TUTORIALS + " ("
+                + TutListDatabase.COL_TITLE + ", " + TutListDatabase.COL_URL
+                + ", " + TutListDatabase.COL_DATE + ") VALUES (?, ?, ?)");
+        try {
+            for (int i = from; i < to; i++) {
+                insert.bindString(1, "Tutorial " + i);
+                insert.bindString(2, "http://example.com/tutorials/" + i);
+                insert.bindLong(3, OLDEST + random.nextInt(MINUTES) * 60L);
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            insert.close();
+            db.endTransaction();
+        }
+    }
+
+    public void testLatestRowUsesDateIndex() {
+        assertOrderedByDateIndex(TutListStatements.SELECT_LATEST_ROW);
+    }
+
+    public void testFirstPageUsesDateIndex() {
+        assertOrderedByDateIndex(pageQuery(null, null));
+    }
+
+    public void testNextPageUsesDateIndex() {
+        assertOrderedByDateIndex(pageQuery(before, null));
+    }
+
+    public void testUnreadPagesUseDateIndex() {
+        assertOrderedByDateIndex(pageQuery(null, UNREAD));
+        assertOrderedByDateIndex(pageQuery(before, UNREAD));
+    }
+
+    public void testRowByIdUsesPrimaryKey() {
+        String plan = explain(TutListStatements.SELECT_ROW_BY_ID,
+                String.valueOf(ROWS / 2));
+        assertTrue(plan, plan.contains("PRIMARY KEY"));
+    }
+
+    /**
+     * @return The query TutListProvider runs for a page of TutListPager's
+     *         rows
+     */
+    private static String pageQuery(String before, String selection) {
+        String where = before == null ? null : TutListProvider
+                .keysetWhere(before);
+        if (selection != null) {
+            where = where == null ? selection : "(" + where + ") AND ("
+                    + selection + ")";
+        }
+        return SQLiteQueryBuilder.buildQueryString(false,
+                TutListDatabase.VIEW_TUTORIALS, TutListStatements.ROW_COLUMNS,
+                where, null, null, TutListProvider.PAGE_SORT_ORDER, PAGE_SIZE);
+    }
+
+    private void assertOrderedByDateIndex(String sql) {
+        String plan = explain(sql);
+        assertTrue(plan, plan.contains(TutListDatabase.INDEX_DATE));
+        // a sort would mean reading every matching row first
+        assertFalse(plan, plan.contains("B-TREE"));
+    }
+
+    /**
+     * @return The plan's detail column, one step per line
+     */
+    private String explain(String sql, String... args) {
+        long start = System.nanoTime();
+        Cursor rows = db.rawQuery(sql, args);
+        try {
+            rows.getCount();
+        } finally {
+            rows.close();
+        }
+        long micros = (System.nanoTime() - start) / 1000;
+
+        StringBuilder plan = new StringBuilder();
+        Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        try {
+            // the detail is the last column in every SQLite version
+            int detail = cursor.getColumnCount() - 1;
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detail)).append('\n');
+            }
+        } finally {
+            cursor.close();
+        }
+        Log.i(DEBUG_TAG, sql + " (" + micros + " us)\n" + plan);
+        return plan.toString();
+    }
+}
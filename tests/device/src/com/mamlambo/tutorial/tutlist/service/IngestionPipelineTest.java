@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.service;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+
+import android.database.Cursor;
+import android.test.AndroidTestCase;
+
+import com.mamlambo.tutorial.tutlist.data.IsolatedTutListContext;
+import com.mamlambo.tutorial.tutlist.data.TutListProvider;
+
+/**
+ * Runs the ingestion pipeline against a stub feed server and an isolated
+ * provider
+ */
+public class IngestionPipelineTest extends AndroidTestCase {
+
+    private static final String ETAG = "\"v1\"";
+    private static final String FEED = "<?xml version=\"1.0\"?>"
+            + "<rss version=\"2.0\"><channel><title>Stub</title>"
+            + "<item><title>Second</title>"
+            + "<link>http://example.com/tutorials/2</link>"
+            + "<pubDate>Wed, 16 Mar 2011 09:00:00 GMT</pubDate></item>"
+            + "<item><title>First</title>"
+            + "<link>http://example.com/tutorials/1</link>"
+            + "<pubDate>Tue, 15 Mar 2011 11:30:00 GMT</pubDate></item>"
+            + "</channel></rss>";
+
+    private IsolatedTutListContext context;
+    private StubFeedServer server;
+    private IngestionPipeline pipeline;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        context = new IsolatedTutListContext(getContext());
+        server = new StubFeedServer(FEED, ETAG);
+        pipeline = new IngestionPipeline(context);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        pipeline.cancel();
+        server.stop();
+        context.clear();
+        super.tearDown();
+    }
+
+    /**
+     * A 304 for an unchanged feed is neither parsed nor written: the
+     * provider sees no write and observers see no notification
+     */
+    public void testUnchangedFeedWritesNothing() throws Exception {
+        List<URL> feeds = Collections.singletonList(server.getUrl());
+
+        IngestionMetrics first = pipeline.run(feeds);
+        assertEquals(1, first.getFeedsSucceeded());
+        assertEquals(2, first.getItemsInserted());
+        assertEquals(2, countTutorials());
+        assertTrue(context.getProvider().getWrites() > 0);
+        assertTrue(context.getResolver().getNotifications() > 0);
+
+        context.getProvider().resetCounts();
+        context.getResolver().resetCounts();
+        IngestionMetrics second = pipeline.run(feeds);
+
+        assertEquals(2, server.getRequests());
+        assertEquals(1, server.getNotModified());
+        assertEquals(1, second.getFeedsNotModified());
+        assertEquals(0, second.getFeedsFailed());
+        assertEquals(0, second.getItemsParsed());
+        assertEquals(0, second.getBatchesWritten());
+        assertEquals(0, context.getProvider().getWrites());
+        assertEquals(0, context.getResolver().getNotifications());
+        assertEquals(2, countTutorials());
+    }
+
+    private int countTutorials() {
+        Cursor cursor = context.getContentResolver().query(
+                TutListProvider.CONTENT_URI, null, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+
+/**
+ * A one-document HTTP server on the loopback interface. It serves the
+ * document with an ETag, and answers 304 to a request that sends that ETag
+ * back in If-None-Match. One connection per request.
+ */
+class StubFeedServer implements Runnable {
+
+    private static final String CHARSET = "ISO-8859-1";
+
+    private final ServerSocket socket;
+    private final Thread thread;
+    private final byte[] body;
+    private final String eTag;
+
+    private volatile int requests;
+    private volatile int notModified;
+
+    StubFeedServer(String body, String eTag) throws IOException {
+        this.body = body.getBytes("UTF-8");
+        this.eTag = eTag;
+        socket = new ServerSocket(0, 8, InetAddress.getByName("127.0.0.1"));
+        thread = new Thread(this, "StubFeedServer");
+        thread.start();
+    }
+
+    URL getUrl() throws MalformedURLException {
+        return new URL("http", "127.0.0.1", socket.getLocalPort(), "/feed");
+    }
+
+    /**
+     * @return The number of requests served
+     */
+    int getRequests() {
+        return requests;
+    }
+
+    /**
+     * @return The number of requests answered with 304
+     */
+    int getNotModified() {
+        return notModified;
+    }
+
+    void stop() throws IOException, InterruptedException {
+        socket.close();
+        thread.join();
+    }
+
+    public void run() {
+        while (true) {
+            Socket connection;
+            try {
+                connection = socket.accept();
+            } catch (IOException e) {
+                // closed by stop()
+                return;
+            }
+            try {
+                serve(connection);
+            } catch (IOException e) {
+                // the client went away; nothing to answer
+            } finally {
+                try {
+                    connection.close();
+                } catch (IOException e) {
+                    // already gone
+                }
+            }
+        }
+    }
+
+    private void serve(Socket connection) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+                connection.getInputStream(), CHARSET));
+        // the request line, then headers up to a blank line
+        String line = in.readLine();
+        String ifNoneMatch = null;
+        while ((line = in.readLine()) != null && line.length() > 0) {
+            int colon = line.indexOf(':');
+            if (colon > 0
+                    && line.substring(0, colon).trim()
+                            .equalsIgnoreCase("If-None-Match")) {
+                ifNoneMatch = line.substring(colon + 1).trim();
+            }
+        }
+        requests++;
+
+        OutputStream out = connection.getOutputStream();
+        if (eTag.equals(ifNoneMatch)) {
+            notModified++;
+            out.write(("HTTP/1.1 304 Not Modified\r\n" + "ETag: " + eTag
+                    + "\r\n" + "Connection: close\r\n\r\n").getBytes(CHARSET));
+        } else {
+            out.write(("HTTP/1.1 200 OK\r\n"
+                    + "Content-Type: application/rss+xml\r\n"
+                    + "Content-Length: " + body.length + "\r\n" + "ETag: "
+                    + eTag + "\r\n" + "Connection: close\r\n\r\n")
+                    .getBytes(CHARSET));
+            out.write(body);
+        }
+        out.flush();
+    }
+}
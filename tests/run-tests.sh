@@ -0,0 +1,42 @@
+#!/bin/sh
+#
+# Compiles the app and the JVM tests under tests/src, then runs the tests
+# with JUnit 4. Run it from anywhere; see tests/README for the jars.
+#
+#   ANDROID_JAR=.../platforms/android-16/android.jar \
+#   JUNIT_JAR=.../junit-4.x.jar HAMCREST_JAR=.../hamcrest-core-1.3.jar \
+#   tests/run-tests.sh [test class ...]
+#
+set -e
+
+: "${ANDROID_JAR:?set ANDROID_JAR to the SDK platform's android.jar}"
+: "${JUNIT_JAR:?set JUNIT_JAR to a JUnit 4 jar}"
+
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+# R.java as generated by ADT, or by aapt (see tests/README)
+GEN_DIR=${GEN_DIR:-$ROOT/gen}
+OUT=${OUT:-${TMPDIR:-/tmp}/tutlist-tests}
+
+if [ ! -f "$GEN_DIR/com/mamlambo/tutorial/tutlist/R.java" ]; then
+    echo "No R.java under $GEN_DIR; build the project once or run aapt" >&2
+    exit 1
+fi
+
+CP=$ANDROID_JAR:$ROOT/lib/android-support-v4.jar:$JUNIT_JAR
+if [ -n "$HAMCREST_JAR" ]; then
+    CP=$CP:$HAMCREST_JAR
+fi
+
+rm -rf "$OUT"
+mkdir -p "$OUT/app" "$OUT/tests"
+javac -nowarn -encoding UTF-8 -cp "$CP" -d "$OUT/app" \
+    $(find "$ROOT/src" "$GEN_DIR" -name '*.java')
+javac -nowarn -encoding UTF-8 -cp "$OUT/app:$CP" -d "$OUT/tests" \
+    $(find "$ROOT/tests/src" -name '*.java')
+
+if [ $# -eq 0 ]; then
+    set -- $(cd "$ROOT/tests/src" && find . -name '*Test.java' \
+        | sed 's#^\./##; s#\.java$##; s#/#.#g')
+fi
+# the test tree comes first, so nothing in android.jar shadows it
+java -cp "$OUT/tests:$OUT/app:$CP" org.junit.runner.JUnitCore "$@"
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.data;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Checks TutListChangeLog's replay and its ring buffer overflow. The log
+ * is process-wide, so each test reads from the sequence it starts at.
+ */
+public class TutListChangeLogTest {
+
+    /**
+     * Collects replayed changes as "type:id"
+     */
+    private static class Recorder implements TutListChangeLog.Visitor {
+        final List<String> changes = new ArrayList<String>();
+
+        public void onChange(int type, long id) {
+            changes.add(type + ":" + id);
+        }
+    }
+
+    @Test
+    public void replaysChangesInOrder() {
+        long start = TutListChangeLog.getSequence();
+        TutListChangeLog.record(TutListChangeLog.INSERT, 1);
+        TutListChangeLog.record(TutListChangeLog.UPDATE, 2);
+        TutListChangeLog.record(TutListChangeLog.DELETE, 3);
+        Recorder recorder = new Recorder();
+        long next = TutListChangeLog.readSince(start, recorder);
+        assertEquals(start + 3, next);
+        assertEquals("[1:1, 2:2, 3:3]", recorder.changes.toString());
+    }
+
+    @Test
+    public void replaysOnlyNewerChanges() {
+        TutListChangeLog.record(TutListChangeLog.UPDATE, 10);
+        long start = TutListChangeLog.getSequence();
+        Recorder recorder = new Recorder();
+        assertEquals(start, TutListChangeLog.readSince(start, recorder));
+        assertEquals(0, recorder.changes.size());
+        TutListChangeLog.record(TutListChangeLog.UPDATE, 11);
+        assertEquals(start + 1, TutListChangeLog.readSince(start, recorder));
+        assertEquals("[2:11]", recorder.changes.toString());
+    }
+
+    @Test
+    public void wrapsAroundAtCapacity() {
+        long start = TutListChangeLog.getSequence();
+        for (int i = 0; i < TutListChangeLog.CAPACITY; i++) {
+            TutListChangeLog.record(TutListChangeLog.UPDATE, i);
+        }
+        // exactly full: everything is still there, oldest first
+        Recorder recorder = new Recorder();
+        assertEquals(start + TutListChangeLog.CAPACITY,
+                TutListChangeLog.readSince(start, recorder));
+        assertEquals(TutListChangeLog.CAPACITY, recorder.changes.size());
+        assertEquals("2:0", recorder.changes.get(0));
+        assertEquals("2:" + (TutListChangeLog.CAPACITY - 1),
+                recorder.changes.get(TutListChangeLog.CAPACITY - 1));
+    }
+
+    @Test
+    public void reportsLostChanges() {
+        long start = TutListChangeLog.getSequence();
+        for (int i = 0; i <= TutListChangeLog.CAPACITY; i++) {
+            TutListChangeLog.record(TutListChangeLog.UPDATE, i);
+        }
+        Recorder recorder = new Recorder();
+        assertEquals(TutListChangeLog.LOST,
+                TutListChangeLog.readSince(start, recorder));
+        assertEquals(0, recorder.changes.size());
+        // one later still has everything
+        assertEquals(start + TutListChangeLog.CAPACITY + 1,
+                TutListChangeLog.readSince(start + 1, recorder));
+        assertEquals("2:1", recorder.changes.get(0));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.data;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Checks the MATCH expressions built for the search uri
+ */
+public class TutListSearchTest {
+
+    @Test
+    public void everyWordIsPrefixTerm() {
+        assertEquals("corona* sdk*", TutListSearch.toMatchQuery("corona sdk"));
+    }
+
+    @Test
+    public void punctuationSplitsWords() {
+        assertEquals("brick* breaker* part* 2*",
+                TutListSearch.toMatchQuery("  brick-breaker, (part 2)!"));
+    }
+
+    @Test
+    public void operatorsAreOnlyTerms() {
+        assertEquals("design* or* not* build* near*",
+                TutListSearch.toMatchQuery("design OR NOT build NEAR"));
+    }
+
+    @Test
+    public void queryOperatorCharactersAreDropped() {
+        assertEquals("title* tablet*",
+                TutListSearch.toMatchQuery("title:\"tablet\" -*"));
+    }
+
+    @Test
+    public void lettersBeyondAsciiAreKept() {
+        assertEquals("día* über*", TutListSearch.toMatchQuery("día über"));
+    }
+
+    @Test
+    public void noWordsGiveEmptyExpression() {
+        assertEquals("", TutListSearch.toMatchQuery(""));
+        assertEquals("", TutListSearch.toMatchQuery(" -/ ?"));
+    }
+}
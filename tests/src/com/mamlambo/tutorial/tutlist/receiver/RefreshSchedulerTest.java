@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.receiver;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the delays RefreshScheduler picks, then drives it with made-up
+ * publish histories and compares it with the fixed daily refresh it
+ * replaced.
+ */
+public class RefreshSchedulerTest {
+
+    private static final long MINUTE = 60 * 1000;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    private static RefreshScheduler newScheduler(long jitter) {
+        return new RefreshScheduler(30 * MINUTE, DAY, jitter, 16,
+                new Random(7));
+    }
+
+    /**
+     * @return Arrival times with the given gaps, starting at 0
+     */
+    private static long[] arrivals(long... gaps) {
+        long[] arrivals = new long[gaps.length + 1];
+        for (int i = 0; i < gaps.length; i++) {
+            arrivals[i + 1] = arrivals[i] + gaps[i];
+        }
+        return arrivals;
+    }
+
+    @Test
+    public void recordRunSkipsRunsWithoutNewItems() {
+        long[] arrivals = { 1, 2 };
+        assertSame(arrivals, newScheduler(0).recordRun(arrivals, 3, false));
+    }
+
+    @Test
+    public void recordRunKeepsNewestArrivals() {
+        RefreshScheduler scheduler = new RefreshScheduler(0, DAY, 0, 3,
+                new Random(7));
+        long[] arrivals = new long[0];
+        for (long now = 1; now <= 5; now++) {
+            arrivals = scheduler.recordRun(arrivals, now, true);
+        }
+        assertArrayEquals(new long[] { 3, 4, 5 }, arrivals);
+    }
+
+    @Test
+    public void withoutHistoryWaitsQuarterOfMaximum() {
+        assertEquals(DAY / 4, newScheduler(0).nextDelay(new long[0], 0));
+        assertEquals(DAY / 4, newScheduler(0).nextDelay(new long[] { 0 }, 0));
+    }
+
+    @Test
+    public void sleepsUntilWindowOpens() {
+        long[] arrivals = arrivals(6 * HOUR, 6 * HOUR, 6 * HOUR);
+        long last = arrivals[arrivals.length - 1];
+        assertEquals(5 * HOUR, newScheduler(0).nextDelay(arrivals, last
+                + HOUR));
+    }
+
+    @Test
+    public void pollsQuarterOfWindowInsideIt() {
+        // gap quartiles 4h and 8h
+        long[] arrivals = arrivals(2 * HOUR, 4 * HOUR, 6 * HOUR, 8 * HOUR,
+                10 * HOUR);
+        long last = arrivals[arrivals.length - 1];
+        assertEquals(HOUR, newScheduler(0).nextDelay(arrivals, last + 5
+                * HOUR));
+    }
+
+    @Test
+    public void backsOffOnceOverdue() {
+        long[] arrivals = arrivals(2 * HOUR, 4 * HOUR, 6 * HOUR, 8 * HOUR,
+                10 * HOUR);
+        long last = arrivals[arrivals.length - 1];
+        RefreshScheduler scheduler = newScheduler(0);
+        assertEquals(3 * HOUR, scheduler.nextDelay(arrivals, last + 20 * HOUR));
+        assertEquals(8 * HOUR, scheduler.nextDelay(arrivals, last + 40 * HOUR));
+        assertEquals(DAY, scheduler.nextDelay(arrivals, last + 30 * DAY));
+    }
+
+    @Test
+    public void keepsMinimumDelay() {
+        long[] arrivals = arrivals(MINUTE, MINUTE, MINUTE);
+        long last = arrivals[arrivals.length - 1];
+        assertEquals(30 * MINUTE, newScheduler(0).nextDelay(arrivals, last));
+    }
+
+    @Test
+    public void jitterStaysWithinBounds() {
+        RefreshScheduler scheduler = newScheduler(10 * MINUTE);
+        for (int i = 0; i < 1000; i++) {
+            long delay = scheduler.nextDelay(new long[0], 0);
+            assertTrue(delay >= DAY / 4 - 10 * MINUTE);
+            assertTrue(delay <= DAY / 4 + 10 * MINUTE);
+        }
+    }
+
+    @Test
+    public void frequentFeedIsSeenSoonerThanDaily() {
+        Random random = new Random(42);
+        List<Long> published = new ArrayList<Long>();
+        for (long t = 0; t < 60 * DAY; t += exponential(random, 3 * HOUR)) {
+            published.add(t);
+        }
+        Run daily = simulateDaily(published, 60 * DAY);
+        Run adaptive = simulate(published, 60 * DAY);
+        assertTrue(adaptive.meanLatency() < daily.meanLatency() / 2);
+    }
+
+    @Test
+    public void dailyFeedIsSeenWithinWindow() {
+        Random random = new Random(42);
+        List<Long> published = new ArrayList<Long>();
+        for (long day = 0; day < 60; day++) {
+            published.add(day * DAY + 11 * HOUR
+                    + (long) ((25 + random.nextDouble() * 10) * MINUTE));
+        }
+        Run adaptive = simulate(published, 60 * DAY);
+        assertTrue(adaptive.meanLatency() < HOUR);
+        // about one refresh a day, not one every half hour
+        assertTrue(adaptive.polls < 2 * 60);
+    }
+
+    @Test
+    public void idleFeedBacksOffToMaximum() {
+        Random random = new Random(42);
+        List<Long> published = new ArrayList<Long>();
+        for (long t = 0; t < 20 * DAY; t += exponential(random, 4 * HOUR)) {
+            published.add(t);
+        }
+        Run adaptive = simulate(published, 60 * DAY);
+        // the last 30 idle days are polled about daily
+        int idlePolls = 0;
+        for (long poll : adaptive.times) {
+            if (poll >= 30 * DAY) {
+                idlePolls++;
+            }
+        }
+        assertTrue(idlePolls <= 31);
+    }
+
+    private static long exponential(Random random, long mean) {
+        return (long) (-Math.log(1 - random.nextDouble()) * mean);
+    }
+
+    /**
+     * Outcome of a simulated stretch of refreshes
+     */
+    private static class Run {
+        final List<Long> times = new ArrayList<Long>();
+        int polls;
+        int seen;
+        long latency;
+
+        double meanLatency() {
+            return seen == 0 ? 0 : (double) latency / seen;
+        }
+
+        /**
+         * Refreshes at a time, collecting everything published by then
+         * 
+         * @return true if something new was found
+         */
+        boolean poll(List<Long> published, long now) {
+            times.add(now);
+            polls++;
+            boolean found = false;
+            while (seen < published.size() && published.get(seen) <= now) {
+                latency += now - published.get(seen);
+                seen++;
+                found = true;
+            }
+            return found;
+        }
+    }
+
+    private static Run simulate(List<Long> published, long until) {
+        RefreshScheduler scheduler = newScheduler(10 * MINUTE);
+        long[] arrivals = new long[0];
+        Run run = new Run();
+        for (long now = 0; now < until;) {
+            boolean found = run.poll(published, now);
+            arrivals = scheduler.recordRun(arrivals, now, found);
+            now += scheduler.nextDelay(arrivals, now);
+        }
+        return run;
+    }
+
+    private static Run simulateDaily(List<Long> published, long until) {
+        Run run = new Run();
+        for (long now = 0; now < until; now += DAY) {
+            run.poll(published, now + 11 * HOUR + 45 * MINUTE);
+        }
+        return run;
+    }
+}
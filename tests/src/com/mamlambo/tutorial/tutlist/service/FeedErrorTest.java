@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.service;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+
+import org.junit.Test;
+
+/**
+ * Checks which fetch errors FeedError treats as worth retrying
+ */
+public class FeedErrorTest {
+
+    private static int classify(int status) {
+        return FeedError.classify(new HttpStatusException(status,
+                "http://example.com/feed"));
+    }
+
+    @Test
+    public void serverTroubleIsTransient() {
+        assertEquals(FeedError.TRANSIENT, classify(500));
+        assertEquals(FeedError.TRANSIENT, classify(503));
+        assertEquals(FeedError.TRANSIENT, classify(408));
+        assertEquals(FeedError.TRANSIENT, classify(429));
+    }
+
+    @Test
+    public void refusalsArePermanent() {
+        assertEquals(FeedError.PERMANENT, classify(400));
+        assertEquals(FeedError.PERMANENT, classify(403));
+        assertEquals(FeedError.PERMANENT, classify(404));
+        assertEquals(FeedError.PERMANENT, classify(410));
+        assertEquals(FeedError.PERMANENT, classify(301));
+    }
+
+    @Test
+    public void networkErrorsAreTransient() {
+        assertEquals(FeedError.TRANSIENT,
+                FeedError.classify(new SocketTimeoutException()));
+        assertEquals(FeedError.TRANSIENT,
+                FeedError.classify(new UnknownHostException("example.com")));
+        assertEquals(FeedError.TRANSIENT,
+                FeedError.classify(new IOException("reset")));
+    }
+
+    @Test
+    public void badUrlsArePermanent() {
+        assertEquals(FeedError.PERMANENT,
+                FeedError.classify(new MalformedURLException()));
+        assertEquals(FeedError.PERMANENT,
+                FeedError.classify(new FileNotFoundException()));
+    }
+
+    @Test
+    public void namesKinds() {
+        assertEquals("transient", FeedError.toString(FeedError.TRANSIENT));
+        assertEquals("permanent", FeedError.toString(FeedError.PERMANENT));
+        assertEquals("parse", FeedError.toString(FeedError.PARSE));
+        assertEquals("unknown", FeedError.toString(0));
+    }
+}
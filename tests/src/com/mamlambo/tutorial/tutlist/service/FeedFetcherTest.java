@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Runs FeedFetcher's conditional GETs against a stub server on the
+ * loopback interface
+ */
+public class FeedFetcherTest {
+
+    private static final String BODY = "<rss><channel></channel></rss>";
+    private static final String ETAG = "\"v1\"";
+    private static final String LAST_MODIFIED = "Tue, 15 Mar 2011 11:30:00 GMT";
+
+    /**
+     * Validators kept in memory instead of the prefs
+     */
+    private static class MemoryValidators implements FeedFetcher.Validators {
+        final HashMap<String, String[]> stored =
+                new HashMap<String, String[]>();
+
+        public String getETag(String feedUrl) {
+            String[] values = stored.get(feedUrl);
+            return values == null ? null : values[0];
+        }
+
+        public String getLastModified(String feedUrl) {
+            String[] values = stored.get(feedUrl);
+            return values == null ? null : values[1];
+        }
+
+        public void set(String feedUrl, String eTag, String lastModified) {
+            stored.put(feedUrl, new String[] { eTag, lastModified });
+        }
+    }
+
+    /**
+     * Serves BODY with validators, 304 to a request carrying them, and
+     * remembers the last request's conditional headers
+     */
+    private class FeedHandler implements HttpHandler {
+        public void handle(HttpExchange exchange) throws IOException {
+            requests++;
+            ifNoneMatch = exchange.getRequestHeaders().getFirst(
+                    "If-None-Match");
+            ifModifiedSince = exchange.getRequestHeaders().getFirst(
+                    "If-Modified-Since");
+            if (status != 200) {
+                exchange.sendResponseHeaders(status, -1);
+            } else if (ETAG.equals(ifNoneMatch)) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                byte[] body = BODY.getBytes("UTF-8");
+                if (gzip) {
+                    body = gzip(body);
+                    exchange.getResponseHeaders().set("Content-Encoding",
+                            "gzip");
+                }
+                exchange.getResponseHeaders().set("ETag", ETAG);
+                exchange.getResponseHeaders().set("Last-Modified",
+                        LAST_MODIFIED);
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+            exchange.close();
+        }
+    }
+
+    private HttpServer server;
+    private URL feedUrl;
+    private MemoryValidators validators;
+    private FeedFetcher fetcher;
+
+    private volatile int status = 200;
+    private volatile boolean gzip;
+    private volatile int requests;
+    private volatile String ifNoneMatch;
+    private volatile String ifModifiedSince;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/feed", new FeedHandler());
+        server.start();
+        feedUrl = new URL("http://127.0.0.1:" + server.getAddress().getPort()
+                + "/feed");
+        validators = new MemoryValidators();
+        fetcher = new FeedFetcher(validators);
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void firstRequestIsUnconditional() throws IOException {
+        FeedFetcher.Response response = fetcher.fetch(feedUrl);
+        try {
+            assertFalse(response.isNotModified());
+            assertEquals(BODY, read(response.getStream()));
+        } finally {
+            response.close();
+        }
+        assertNull(ifNoneMatch);
+        assertNull(ifModifiedSince);
+    }
+
+    @Test
+    public void validatorsAreStoredOnlyOnCommit() throws IOException {
+        FeedFetcher.Response response = fetcher.fetch(feedUrl);
+        read(response.getStream());
+        response.close();
+        assertTrue(validators.stored.isEmpty());
+
+        // a parse failure skips commit(), so the next request is full
+        response = fetcher.fetch(feedUrl);
+        assertFalse(response.isNotModified());
+        response.close();
+        assertNull(ifNoneMatch);
+    }
+
+    @Test
+    public void committedValidatorsMakeNextRequestConditional()
+            throws IOException {
+        FeedFetcher.Response response = fetcher.fetch(feedUrl);
+        read(response.getStream());
+        response.commit();
+        response.close();
+        assertEquals(ETAG, validators.getETag(feedUrl.toString()));
+        assertEquals(LAST_MODIFIED,
+                validators.getLastModified(feedUrl.toString()));
+
+        response = fetcher.fetch(feedUrl);
+        try {
+            assertTrue(response.isNotModified());
+            assertNull(response.getStream());
+            // nothing new to remember
+            response.commit();
+        } finally {
+            response.close();
+        }
+        assertEquals(2, requests);
+        assertEquals(ETAG, ifNoneMatch);
+        assertEquals(LAST_MODIFIED, ifModifiedSince);
+        assertEquals(ETAG, validators.getETag(feedUrl.toString()));
+    }
+
+    @Test
+    public void decodesGzipBodies() throws IOException {
+        gzip = true;
+        FeedFetcher.Response response = fetcher.fetch(feedUrl);
+        try {
+            assertEquals(BODY, read(response.getStream()));
+        } finally {
+            response.close();
+        }
+    }
+
+    @Test
+    public void unexpectedStatusIsThrown() throws IOException {
+        status = 503;
+        try {
+            fetcher.fetch(feedUrl).close();
+            fail("No exception for 503");
+        } catch (HttpStatusException e) {
+            assertEquals(503, e.getStatus());
+            assertEquals(FeedError.TRANSIENT, FeedError.classify(e));
+        }
+        status = 404;
+        try {
+            fetcher.fetch(feedUrl).close();
+            fail("No exception for 404");
+        } catch (HttpStatusException e) {
+            assertEquals(FeedError.PERMANENT, FeedError.classify(e));
+        }
+    }
+
+    private static String read(InputStream stream) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int count;
+        while ((count = stream.read(buffer)) != -1) {
+            bytes.write(buffer, 0, count);
+        }
+        return bytes.toString("UTF-8");
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GZIPOutputStream out = new GZIPOutputStream(bytes);
+        out.write(data);
+        out.close();
+        return bytes.toByteArray();
+    }
+}
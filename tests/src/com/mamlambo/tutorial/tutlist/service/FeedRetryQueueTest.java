@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the retry delays FeedRetryQueue picks
+ */
+public class FeedRetryQueueTest {
+
+    private static final long BASE = 60 * 1000;
+    private static final long MAX = 6 * 60 * 60 * 1000;
+
+    /**
+     * A source whose nextDouble() is always the same
+     */
+    private static Random fixed(final double value) {
+        return new Random() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public double nextDouble() {
+                return value;
+            }
+        };
+    }
+
+    @Test
+    public void doublesWithEachAttempt() {
+        Random none = fixed(0);
+        assertEquals(BASE, FeedRetryQueue.backoff(BASE, MAX, 1, none));
+        assertEquals(2 * BASE, FeedRetryQueue.backoff(BASE, MAX, 2, none));
+        assertEquals(4 * BASE, FeedRetryQueue.backoff(BASE, MAX, 3, none));
+        assertEquals(64 * BASE, FeedRetryQueue.backoff(BASE, MAX, 7, none));
+    }
+
+    @Test
+    public void stopsAtMaximum() {
+        Random none = fixed(0);
+        assertEquals(MAX, FeedRetryQueue.backoff(BASE, MAX, 10, none));
+        // no overflow however many attempts
+        assertEquals(MAX, FeedRetryQueue.backoff(BASE, MAX, 40, none));
+        assertEquals(MAX, FeedRetryQueue.backoff(BASE, MAX, 100, none));
+    }
+
+    @Test
+    public void dropsUpToHalfAtRandom() {
+        assertEquals(2 * BASE - BASE / 2,
+                FeedRetryQueue.backoff(BASE, MAX, 2, fixed(0.5)));
+        Random random = new Random(7);
+        for (int attempts = 1; attempts <= 12; attempts++) {
+            long full = Math.min(MAX, BASE << (attempts - 1));
+            long delay = FeedRetryQueue.backoff(BASE, MAX, attempts, random);
+            assertTrue(delay <= full);
+            assertTrue(delay > full / 2);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Checks that HostLimiter queues tasks over a host's limit instead of
+ * handing them to the executor
+ */
+public class HostLimiterTest {
+
+    /**
+     * Keeps the tasks it is given, without running them
+     */
+    private static class RecordingExecutor implements Executor {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        boolean shutDown;
+
+        public void execute(Runnable task) {
+            if (shutDown) {
+                throw new RejectedExecutionException();
+            }
+            tasks.add(task);
+        }
+    }
+
+    private static Runnable task() {
+        return new Runnable() {
+            public void run() {
+            }
+        };
+    }
+
+    @Test
+    public void queuesTasksOverTheLimit() {
+        RecordingExecutor executor = new RecordingExecutor();
+        HostLimiter hosts = new HostLimiter(executor, 2);
+        Runnable a1 = task(), a2 = task(), a3 = task(), b1 = task();
+        hosts.execute("a.example.com", a1);
+        hosts.execute("a.example.com", a2);
+        hosts.execute("a.example.com", a3);
+        hosts.execute("b.example.com", b1);
+
+        assertEquals(3, executor.tasks.size());
+        assertFalse(executor.tasks.contains(a3));
+        assertTrue(executor.tasks.contains(b1));
+        assertEquals(1, hosts.getWaiting("a.example.com"));
+        assertEquals(0, hosts.getWaiting("b.example.com"));
+
+        hosts.finished("a.example.com");
+        assertEquals(a3, executor.tasks.get(3));
+        assertEquals(0, hosts.getWaiting("a.example.com"));
+    }
+
+    @Test
+    public void freesTheSlotWhenNothingWaits() {
+        RecordingExecutor executor = new RecordingExecutor();
+        HostLimiter hosts = new HostLimiter(executor, 1);
+        hosts.execute("a.example.com", task());
+        hosts.finished("a.example.com");
+
+        hosts.execute("a.example.com", task());
+        assertEquals(2, executor.tasks.size());
+        assertEquals(0, hosts.getWaiting("a.example.com"));
+    }
+
+    @Test
+    public void ignoresHostCase() {
+        RecordingExecutor executor = new RecordingExecutor();
+        HostLimiter hosts = new HostLimiter(executor, 1);
+        hosts.execute("A.Example.com", task());
+        hosts.execute("a.example.COM", task());
+
+        assertEquals(1, executor.tasks.size());
+        assertEquals(1, hosts.getWaiting("a.example.com"));
+    }
+
+    @Test
+    public void cancelsWaitingTasksOnceShutDown() {
+        RecordingExecutor executor = new RecordingExecutor();
+        HostLimiter hosts = new HostLimiter(executor, 1);
+        hosts.execute("a.example.com", task());
+        FutureTask<Void> waiting = new FutureTask<Void>(task(), null);
+        hosts.execute("a.example.com", waiting);
+
+        executor.shutDown = true;
+        hosts.finished("a.example.com");
+        assertTrue(waiting.isCancelled());
+    }
+
+    /**
+     * With one host's first task holding a pool thread, its second task
+     * waits in the queue, so the other host's task gets the other thread
+     */
+    @Test
+    public void otherHostsKeepThePool() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            final HostLimiter hosts = new HostLimiter(pool, 1);
+            final CountDownLatch release = new CountDownLatch(1);
+            final CountDownLatch otherHostDone = new CountDownLatch(1);
+            hosts.execute("a.example.com", new Runnable() {
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        hosts.finished("a.example.com");
+                    }
+                }
+            });
+            FutureTask<Void> second = new FutureTask<Void>(task(), null);
+            hosts.execute("a.example.com", second);
+            hosts.execute("b.example.com", new Runnable() {
+                public void run() {
+                    otherHostDone.countDown();
+                    hosts.finished("b.example.com");
+                }
+            });
+
+            assertTrue(otherHostDone.await(5, TimeUnit.SECONDS));
+            assertFalse(second.isDone());
+            release.countDown();
+            second.get(5, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks KnownItemSet's lookups and its FNV-1a hash
+ */
+public class KnownItemSetTest {
+
+    @Test
+    public void containsOnlyItsUrls() {
+        KnownItemSet set = KnownItemSet.of("http://a.example/1",
+                "http://a.example/2", "http://b.example/1");
+        assertEquals(3, set.size());
+        assertTrue(set.contains("http://a.example/1"));
+        assertTrue(set.contains("http://b.example/1"));
+        assertFalse(set.contains("http://a.example/3"));
+        assertFalse(set.contains("http://A.example/1"));
+        assertFalse(set.contains(null));
+    }
+
+    @Test
+    public void emptySetContainsNothing() {
+        KnownItemSet set = KnownItemSet.of();
+        assertEquals(0, set.size());
+        assertFalse(set.contains(""));
+    }
+
+    @Test
+    public void hashIsFnv1aOverUtf16() {
+        // the offset basis for no input
+        assertEquals(0xcbf29ce484222325L, KnownItemSet.hash(""));
+        // "a" hashes as the bytes 0x61 0x00
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ 0x61) * 0x100000001b3L;
+        hash = (hash ^ 0x00) * 0x100000001b3L;
+        assertEquals(hash, KnownItemSet.hash("a"));
+    }
+
+    @Test
+    public void hashUsesHighByteOfChars() {
+        assertFalse(KnownItemSet.hash("š") == KnownItemSet.hash("a"));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.service;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks which refresh runs TutListDownloaderService posts a notification
+ * for
+ */
+public class RefreshNotificationTest {
+
+    private static final long UNKNOWN = -1;
+
+    @Test
+    public void manualRunsAlwaysReport() {
+        assertFalse(TutListDownloaderService.isQuiet(true, true, false, 0));
+        assertFalse(TutListDownloaderService.isQuiet(false, true, false, 0));
+        assertFalse(TutListDownloaderService.isQuiet(false, true, true,
+                UNKNOWN));
+    }
+
+    @Test
+    public void backgroundFailuresReport() {
+        assertFalse(TutListDownloaderService.isQuiet(false, false, false, 0));
+        assertFalse(TutListDownloaderService.isQuiet(false, false, false,
+                UNKNOWN));
+        assertFalse(TutListDownloaderService.isQuiet(false, false, false, 3));
+    }
+
+    @Test
+    public void backgroundSuccessReportsUnlessNothingNew() {
+        assertTrue(TutListDownloaderService.isQuiet(true, false, false, 0));
+        assertFalse(TutListDownloaderService.isQuiet(true, false, false, 3));
+        // the stats row couldn't be read
+        assertFalse(TutListDownloaderService.isQuiet(true, false, false,
+                UNKNOWN));
+    }
+
+    @Test
+    public void failedRetriesStayQuiet() {
+        assertTrue(TutListDownloaderService.isQuiet(false, false, true, 0));
+        assertTrue(TutListDownloaderService.isQuiet(false, false, true,
+                UNKNOWN));
+        assertFalse(TutListDownloaderService.isQuiet(true, false, true, 2));
+        assertTrue(TutListDownloaderService.isQuiet(true, false, true, 0));
+    }
+}
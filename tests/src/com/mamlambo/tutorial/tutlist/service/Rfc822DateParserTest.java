@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2011, Lauren Darcey and Shane Conder
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are 
+ * permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this list of 
+ *   conditions and the following disclaimer.
+ *   
+ * * Redistributions in binary form must reproduce the above copyright notice, this list 
+ *   of conditions and the following disclaimer in the documentation and/or other 
+ *   materials provided with the distribution.
+ *   
+ * * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used
+ *   to endorse or promote products derived from this software without specific prior 
+ *   written permission.
+ *   
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY 
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES 
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT 
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR 
+ * BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, 
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF 
+ * THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * <ORGANIZATION> = Mamlambo
+ */
+package com.mamlambo.tutorial.tutlist.service;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+/**
+ * Checks Rfc822DateParser against dates worked out with a calendar
+ */
+public class Rfc822DateParserTest {
+
+    private static final long HOUR = 60 * 60 * 1000;
+
+    private static long utc(int year, int month, int day, int hour,
+            int minute, int second) {
+        Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, minute, second);
+        return calendar.getTimeInMillis();
+    }
+
+    @Test
+    public void parsesFullDate() {
+        assertEquals(utc(2011, 3, 15, 11, 30, 0),
+                Rfc822DateParser.parse("Tue, 15 Mar 2011 11:30:00 +0000"));
+    }
+
+    @Test
+    public void appliesNumericOffsets() {
+        assertEquals(utc(2011, 3, 15, 16, 30, 0),
+                Rfc822DateParser.parse("Tue, 15 Mar 2011 11:30:00 -0500"));
+        assertEquals(utc(2011, 3, 15, 6, 0, 0),
+                Rfc822DateParser.parse("15 Mar 2011 11:30 +0530"));
+    }
+
+    @Test
+    public void appliesNamedZones() {
+        long noon = utc(2011, 7, 1, 12, 0, 0);
+        assertEquals(noon, Rfc822DateParser.parse("1 Jul 2011 12:00:00 GMT"));
+        assertEquals(noon, Rfc822DateParser.parse("1 Jul 2011 12:00:00 UT"));
+        assertEquals(noon + 5 * HOUR,
+                Rfc822DateParser.parse("1 Jul 2011 12:00:00 EST"));
+        assertEquals(noon + 7 * HOUR,
+                Rfc822DateParser.parse("1 Jul 2011 12:00:00 PDT"));
+        // military letters count as UTC
+        assertEquals(noon, Rfc822DateParser.parse("1 Jul 2011 12:00:00 Z"));
+    }
+
+    @Test
+    public void acceptsLooseForms() {
+        long expected = utc(2011, 2, 1, 9, 5, 0);
+        assertEquals(expected, Rfc822DateParser.parse("  1 feb 11 09:05 "));
+        assertEquals(expected,
+                Rfc822DateParser.parse("Tuesday, 1 February 2011 09:05"));
+        assertEquals(utc(1999, 12, 31, 0, 0, 0),
+                Rfc822DateParser.parse("31 Dec 99"));
+    }
+
+    @Test
+    public void handlesLeapYears() {
+        assertEquals(utc(2012, 2, 29, 0, 0, 0),
+                Rfc822DateParser.parse("29 Feb 2012"));
+        assertEquals(utc(2000, 2, 29, 0, 0, 0),
+                Rfc822DateParser.parse("29 Feb 2000"));
+        assertEquals(Rfc822DateParser.INVALID,
+                Rfc822DateParser.parse("29 Feb 2011"));
+        assertEquals(Rfc822DateParser.INVALID,
+                Rfc822DateParser.parse("29 Feb 1900"));
+    }
+
+    @Test
+    public void matchesCalendarAcrossYears() {
+        for (int year = 1970; year <= 2100; year += 7) {
+            for (int month = 1; month <= 12; month++) {
+                assertEquals(utc(year, month, 28, 0, 0, 0) / (24 * HOUR),
+                        Rfc822DateParser.daysFromCivil(year, month, 28));
+            }
+        }
+    }
+
+    @Test
+    public void rejectsMalformedDates() {
+        String[] bad = { null, "", "yesterday", "Tue 15 Mar 2011",
+                "32 Mar 2011", "15 Foo 2011", "15 Mar 011",
+                "15 Mar 2011 24:00", "15 Mar 2011 11:60", "15 Mar 2011 11",
+                "15 Mar 2011 11:30:00 +00", "15 Mar 2011 11:30:00 XYZ" };
+        for (String text : bad) {
+            assertEquals(text, Rfc822DateParser.INVALID,
+                    Rfc822DateParser.parse(text));
+        }
+    }
+}